@@ -1,12 +1,25 @@
 package org.jenkinsci.plugins.MaidsafeJenkins;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 
 import org.jenkinsci.plugins.MaidsafeJenkins.MaidsafeJenkinsBuilder.DescriptorImpl;
 import org.jenkinsci.plugins.MaidsafeJenkins.actions.GithubCheckoutAction;
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.ModuleBuildResult;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.BuildOutputCache;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ModuleDependencyGraph;
 import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.LineCallbackOutputStream.LineCallback;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import hudson.EnvVars;
@@ -15,35 +28,197 @@ import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
+import hudson.model.Run;
 import hudson.tasks.*;
 
 public class BuildScript extends Builder {
 	private final static String BUILD_STEP_NAME = "Build Script based on Modules";
 	private final String buildCommand;
+	private final boolean deltaMode;
+	private final String moduleDependencies;
+	private final boolean perModule;
+	private final int parallelism;
+	private final String cacheOutputs;
+	private static final String MODULE_LOG_DIR = "moduleLogs";
 	
 	@DataBoundConstructor
-	public BuildScript(String buildCommand) {
+	public BuildScript(String buildCommand, boolean deltaMode, String moduleDependencies, boolean perModule,
+			int parallelism, String cacheOutputs) {
 		this.buildCommand = buildCommand;
+		this.deltaMode = deltaMode;
+		this.moduleDependencies = moduleDependencies;
+		this.perModule = perModule;
+		this.parallelism = parallelism;
+		this.cacheOutputs = cacheOutputs;
 	}
 	
 	public String getBuildCommand() {
 		return buildCommand;
 	}
 	
-	private String getModules(GithubCheckoutAction action) {
+	public boolean getDeltaMode() {
+		return deltaMode;
+	}
+	
+	public String getModuleDependencies() {
+		return moduleDependencies;
+	}
+	
+	public boolean getPerModule() {
+		return perModule;
+	}
+	
+	public int getParallelism() {
+		return parallelism > 0 ? parallelism : 1;
+	}
+	
+	/**
+	 * Glob of the build outputs of a module which are cached, empty if the outputs are not cached 
+	 */
+	public String getCacheOutputs() {
+		return cacheOutputs;
+	}
+	
+	/**
+	 * Directory of the build holding the log of every module built with {@link #getPerModule()}
+	 */
+	public static File getModuleLogDir(Run<?, ?> run) {
+		return new File(run.getRootDir(), MODULE_LOG_DIR);
+	}
+	
+	/**
+	 * Builds each module with its own instance of the build commands, the modules are built concurrently
+	 * in the order of the dependencies
+	 * @return true if all the modules were built successfully
+	 */
+	private boolean buildModules(AbstractBuild<?, ?> build, GithubCheckoutAction action, ShellScript script,
+			List<String> modules, Map<String, String> replacements, PrintStream logger) throws InterruptedException {
+		List<String> commands;
+		String path;
+		List<ModuleBuildResult> results;
+		ModuleBuildRunner runner;
+		BuildOutputCache cache;
+		Map<String, String> modulePaths = new HashMap<String, String>();
+		if (action.getModulePaths() != null) {
+			modulePaths.putAll(action.getModulePaths());
+		}
+		Map<String, List<String>> moduleCommands = new LinkedHashMap<String, List<String>>();
+		for (String module : modules) {
+			path = modulePaths.containsKey(module) ? modulePaths.get(module) : module;
+			commands = new ArrayList<String>();
+			for (String cmd : buildCommand.split("\\n")) {
+				for (Map.Entry<String, String> replacement : replacements.entrySet()) {
+					cmd = cmd.replace(replacement.getKey(), replacement.getValue());
+				}
+				commands.add(cmd.replace("#MODULE_PATH#", path).replace("#MODULE#", module));
+			}
+			moduleCommands.put(module, commands);
+			modulePaths.put(module, path);
+		}
+		logger.println("Building " + modules.size() + " modules, " + getParallelism() + " at a time");
+		runner = new ModuleBuildRunner(script, ModuleDependencyGraph.parse(moduleDependencies), getParallelism(),
+				getModuleLogDir(build), logger);
+		cache = BuildOutputCache.forNode(build.getBuiltOn());
+		if (cacheOutputs != null && !cacheOutputs.trim().isEmpty() && cache != null) {
+			runner.setCache(cache, cacheOutputs.trim(), build.getWorkspace(), modulePaths);
+		}
+		results = runner.run(moduleCommands);
+		action.setModuleBuildResults(results);
+		for (ModuleBuildResult result : results) {
+			if (!result.isSuccess()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private String getModules(List<String> modules) {
 		StringBuilder builder = new StringBuilder();
-		for (String module : action.getModulesWithMatchingPR()) {									
+		if (modules == null) {
+			return "";
+		}
+		for (String module : modules) {									
 			builder.append(" ").append(module);
 		}
 		return builder.toString();
 	}
 	
+	/**
+	 * Modules changed by the Pull Requests along with the modules depending on them.
+	 * A module is changed when the merge base diff of its Pull Request is not empty. The submodules whose commit
+	 * is changed by the Pull Request of the super project are changed as well. A module is considered as changed
+	 * when its diff can not be computed.
+	 */
+	private List<String> getAffectedModules(GithubCheckoutAction action, ShellScript script, PrintStream logger) {
+		String path;
+		PullRequest pullRequest;
+		List<String> affectedModules;
+		final Set<String> changedPaths = new HashSet<String>();
+		Set<String> changedModules = new LinkedHashSet<String>();
+		Map<String, String> modulePaths = action.getModulePaths();
+		Map<String, PullRequest> pullRequests = action.getActualPRList();
+		if (pullRequests == null) {
+			return new ArrayList<String>();
+		}
+		if (modulePaths == null) {
+			modulePaths = new HashMap<String, String>();
+		}
+		for (String module : pullRequests.keySet()) {
+			pullRequest = pullRequests.get(module);
+			path = modulePaths.get(module);
+			if (path == null || pullRequest.getHeadSha() == null) {
+				changedModules.add(module);
+				continue;
+			}
+			changedPaths.clear();
+			try {
+				if (script.execute(getDiffCommands(path, pullRequest), new LineCallback() {
+					public void onLine(String line) {
+						changedPaths.add(line.trim());
+					}
+				}) != 0) {
+					logger.println("Diff could not be computed for " + module + ", it is considered as changed");
+					changedModules.add(module);
+					continue;
+				}
+			} catch (Exception ex) {
+				logger.println("Diff could not be computed for " + module + " :: " + ex.getMessage());
+				changedModules.add(module);
+				continue;
+			}
+			if (!changedPaths.isEmpty()) {
+				changedModules.add(module);
+			}
+			for (Map.Entry<String, String> submodule : modulePaths.entrySet()) {
+				if (changedPaths.contains(submodule.getValue())) {
+					changedModules.add(submodule.getKey());
+				}
+			}
+		}
+		affectedModules = ModuleDependencyGraph.parse(moduleDependencies).getAffectedModules(changedModules);
+		logger.println("Changed modules ::" + getModules(new ArrayList<String>(changedModules)));
+		logger.println("Affected modules ::" + getModules(affectedModules));
+		return affectedModules;
+	}
+	
+	private List<String> getDiffCommands(String path, PullRequest pullRequest) {
+		List<String> commands = new ArrayList<String>();
+		commands.add("cd " + path);
+		// the local base branch may be stale or missing, the remote one is fetched by the checkout
+		commands.add("git diff --name-only origin/" + pullRequest.getBaseRef() + "..." + pullRequest.getHeadSha());
+		return commands;
+	}
+	
 	@Override
 	public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
 			throws InterruptedException, IOException {
 		EnvVars envVars;
 		ShellScript shellScript;
 		List<String> commands;
+		String modules;
+		String affectedModules;
+		List<String> moduleList;
+		Map<String, String> replacements;
 		int result;
 		GithubCheckoutAction checkoutAction;
 		checkoutAction = build.getAction(GithubCheckoutAction.class);
@@ -53,13 +228,31 @@ public class BuildScript extends Builder {
 		}
 		commands = new ArrayList<String>();
 		envVars = build.getEnvironment(listener);
-		shellScript = new ShellScript(build.getWorkspace(), launcher, envVars);
+		// The script of the checkout is reused for its shell session
+		shellScript = checkoutAction.getScript() != null ? checkoutAction.getScript() 
+				: new ShellScript(build.getWorkspace(), launcher, envVars);
 		String[] cmds = buildCommand.split("\\n");							
 		try {
+			// the diffs are computed only when the affected modules are used
+			if (checkoutAction.getAffectedModules() == null && (deltaMode || buildCommand.contains("#AFFECTED_MODULES#"))) {
+				checkoutAction.setAffectedModules(getAffectedModules(checkoutAction, shellScript, listener.getLogger()));
+			}
+			moduleList = deltaMode ? checkoutAction.getAffectedModules() : checkoutAction.getModulesWithMatchingPR();
+			modules = getModules(moduleList);
+			affectedModules = getModules(checkoutAction.getAffectedModules());
+			if (perModule) {
+				replacements = new LinkedHashMap<String, String>();
+				replacements.put("#MODULES#", modules);
+				replacements.put("#AFFECTED_MODULES#", affectedModules);
+				return buildModules(build, checkoutAction, shellScript, moduleList == null ? new ArrayList<String>()
+						: moduleList, replacements, listener.getLogger());
+			}
 			for (String cmd : cmds) {
-				commands.add(cmd.replace("#MODULES#", getModules(checkoutAction)));
+				commands.add(cmd.replace("#MODULES#", modules).replace("#AFFECTED_MODULES#", affectedModules));
 			}			
 			result = shellScript.execute(commands);
+		} catch (InterruptedException e) {
+			throw e;
 		}catch(Exception e) {
 			listener.getLogger().println("Exception :: " + e.getMessage());
 			result = 1;
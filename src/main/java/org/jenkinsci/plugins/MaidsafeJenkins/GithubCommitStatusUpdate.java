@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.MaidsafeJenkins;
 import java.io.IOException;
 import java.io.PrintStream;
 
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.CommitStatusAction;
 import org.jenkinsci.plugins.MaidsafeJenkins.actions.GithubInitializerAction;
 import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatus;
 import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatus.State;
@@ -23,6 +24,7 @@ import hudson.tasks.Publisher;
  * This depends on {@link GithubInitializerAction}. {@link GithubInitializerAction} provides the information about the modules built and the matching 
  * Pull request. Thus based on the data received, the Commit Status API is used to update the Commit status with the appropriate Messages and Result.
  * The OAuth Token for the Commit Status API is also retrieved form the  {@link GithubInitializerAction}
+ * The statuses are posted asynchronously, the delivery results are recorded in the {@link CommitStatusAction} of the build.
  * 
  * @author krishna
  *
@@ -54,6 +56,7 @@ public class GithubCommitStatusUpdate extends Publisher {
 	public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
 			throws InterruptedException, IOException {
 		GithubInitializerAction initializerAction;
+		CommitStatusAction statusAction;
 		CommitStatus commitStatusApi;
 		PrintStream logger;
 		logger = listener.getLogger();				
@@ -62,8 +65,13 @@ public class GithubCommitStatusUpdate extends Publisher {
 			logger.println("Pull Requests could not be found. Failed to update commit status in Github");
 			return true;
 		}	
+		statusAction = build.getAction(CommitStatusAction.class);
+		if (statusAction == null) {
+			statusAction = new CommitStatusAction();
+			build.addAction(statusAction);
+		}
 		commitStatusApi = new CommitStatus(initializerAction.getOrgName(), logger,
-				initializerAction.isTestingMode(), initializerAction.getOauthAccessToken());		
+				initializerAction.isTestingMode(), initializerAction.getOauthAccessToken(), statusAction);		
 		if (build.getResult() == Result.SUCCESS) {
 			commitStatusApi.updateAll(initializerAction.getPullRequests(), 
 					State.SUCCESS, build.getUrl());
@@ -71,7 +79,8 @@ public class GithubCommitStatusUpdate extends Publisher {
 			commitStatusApi.updateAll(initializerAction.getPullRequests(), 
 					State.FAILURE, build.getUrl(), initializerAction.getFailureReason());
 		}
-			
+		logger.println("Commit status update queued for the Pull Requests. Delivery results are recorded in the build");
+
 		return true;
 	}
 	
@@ -6,18 +6,35 @@ import hudson.model.listeners.RunListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import java.io.*;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.servlet.ServletException;
 import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.CommitStatusAction;
 import org.jenkinsci.plugins.MaidsafeJenkins.actions.GithubCheckoutAction;
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.GitHubWebhook;
 import org.jenkinsci.plugins.MaidsafeJenkins.actions.GithubInitializerAction;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.GitBackend;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.GitBackendType;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.WorkspaceState;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.WorktreeGitBackend;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.BranchCleanup;
 import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatus;
 import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatus.State;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatusPublisher;
 import org.jenkinsci.plugins.MaidsafeJenkins.github.GitHubHelper;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.GitMirrorCache;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.GitWorktreeCache;
 import org.jenkinsci.plugins.MaidsafeJenkins.github.GitHubPullRequestHelper;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.GitHubTransport;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestIndex;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestListCache;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.RateLimitScheduler;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.match.BranchPrefixMatcher;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.match.PullRequestMatcher;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.BuildOutputCache;
 import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -38,6 +55,11 @@ public class MaidsafeJenkinsBuilder extends Builder {
 	private final String defaultBaseBranch;	
 	private final boolean updateCommitStatusToPending;
 	private final boolean testingMode;
+	private final boolean useMirrorCache;
+	private final String gitBackend;
+	private final boolean useWorktrees;
+	private final PullRequestMatcher prMatcher;
+	private final String prLookupMode;
 
 	public String getDefaultBaseBranch() {
 		return defaultBaseBranch;
@@ -62,18 +84,47 @@ public class MaidsafeJenkinsBuilder extends Builder {
 	public boolean getTestingMode() {
 		return testingMode;
 	}
+	
+	public boolean getUseMirrorCache() {
+		return useMirrorCache;
+	}
+	
+	public String getGitBackend() {
+		return GitBackendType.fromName(gitBackend).name();
+	}
+	
+	public boolean getUseWorktrees() {
+		return useWorktrees;
+	}
+	
+	/**
+	 * @return the configured match strategy, the branch name prefix ignoring the case for the older configurations
+	 */
+	public PullRequestMatcher getPrMatcher() {
+		return prMatcher == null ? new BranchPrefixMatcher(true) : prMatcher;
+	}
+	
+	public String getPrLookupMode() {
+		return GitHubPullRequestHelper.LookupMode.fromName(prLookupMode).name();
+	}
 
 	// Fields in config.jelly must match the parameter names in the
 	// "DataBoundConstructor"
 	@DataBoundConstructor
 	public MaidsafeJenkinsBuilder(String orgName, String repoSubFolder, String superProjectName,
-			String defaultBaseBranch, boolean updateCommitStatusToPending, boolean testingMode) {
+			String defaultBaseBranch, boolean updateCommitStatusToPending, boolean testingMode, boolean useMirrorCache,
+			String gitBackend, boolean useWorktrees, PullRequestMatcher prMatcher, String prLookupMode) {
 		this.orgName = orgName;
 		this.repoSubFolder = repoSubFolder;		
 		this.superProjectName = superProjectName;
 		this.defaultBaseBranch = defaultBaseBranch;			
 		this.updateCommitStatusToPending = updateCommitStatusToPending;
 		this.testingMode = testingMode;
+		this.useMirrorCache = useMirrorCache;
+		this.gitBackend = gitBackend;
+		this.useWorktrees = useWorktrees;
+		this.prMatcher = prMatcher;
+		this.prLookupMode = prLookupMode;
 	}
 		
 	/**
@@ -81,7 +132,7 @@ public class MaidsafeJenkinsBuilder extends Builder {
 	 * @param action {@link GithubCheckoutAction} instance to update 
 	 * @param prList Pull Request List to be set to the action
 	 */
-	private void updateCheckoutActionForPR(GithubCheckoutAction action, Map<String, Map<String, Object>> prList) {
+	private void updateCheckoutActionForPR(GithubCheckoutAction action, Map<String, PullRequest> prList) {
 		String module;
 		Iterator<String> iterator;
 		List<String> urls;
@@ -92,7 +143,7 @@ public class MaidsafeJenkinsBuilder extends Builder {
 			iterator = prList.keySet().iterator();
 			while(iterator.hasNext()) {
 				module = iterator.next();
-				urls.add((String)prList.get(module).get("html_url"));
+				urls.add(prList.get(module).getHtmlUrl());
 				modules.add(module);
 			}
 		}		
@@ -101,6 +152,78 @@ public class MaidsafeJenkinsBuilder extends Builder {
 		action.setActualPRList(prList);
 	}		
 	
+	/**
+	 * The worktrees are always handled with the command line, as JGit does not support the linked worktrees
+	 */
+	private GitBackend getGitBackend(FilePath superProject, ShellScript script) {
+		if (useWorktrees) {
+			return new WorktreeGitBackend(script);
+		}
+		return GitBackendType.fromName(gitBackend).create(superProject, script);
+	}
+	
+	/**
+	 * Creates the worktrees of the super project and of the submodules in the workspace, see {@link GitWorktreeCache}
+	 */
+	private void createWorktrees(AbstractBuild<?, ?> build, FilePath rootDir, ShellScript script, PrintStream logger)
+			throws Exception {
+		GitWorktreeCache worktreeCache = GitWorktreeCache.forNode(build.getBuiltOn());
+		if (!isSubFolder(repoSubFolder)) {
+			// the worktree directory is replaced when it is not a worktree, it can not be the workspace itself
+			throw new Exception("Worktrees require the super project to be checked out in a subfolder of the workspace");
+		}
+		if (worktreeCache == null) {
+			throw new Exception("Worktrees can not be created, " + build.getBuiltOnStr() + " is offline");
+		}
+		logger.println("Checking out worktrees of the clones in " + worktreeCache.getCloneRoot().getRemote());
+		if (script.execute(worktreeCache.getWorktreeCommands(orgName, superProjectName, defaultBaseBranch, rootDir)) != 0) {
+			throw new Exception("Worktrees could not be created in " + rootDir.getRemote() + ". Check the logs");
+		}
+	}
+	
+	/**
+	 * @return true if the folder is a subfolder of the workspace, rather than blank or the workspace itself
+	 */
+	private static boolean isSubFolder(String folder) {
+		String normalized = normalizeSubFolder(folder);
+		return normalized != null && !normalized.isEmpty();
+	}
+	
+	/**
+	 * Normalizes the subfolder to a relative path with '/' separators, blank for the workspace itself
+	 * @return null if the folder is absolute or has a '..' segment, thus may point out of the workspace
+	 */
+	private static String normalizeSubFolder(String folder) {
+		StringBuilder normalized = new StringBuilder();
+		if (folder == null) {
+			return "";
+		}
+		folder = folder.trim().replace('\\', '/');
+		if (folder.startsWith("/") || folder.startsWith("~") || folder.matches("[A-Za-z]:.*")) {
+			return null;
+		}
+		for (String segment : folder.split("/")) {
+			if (segment.equals("..")) {
+				return null;
+			}
+			if (segment.isEmpty() || segment.equals(".")) {
+				continue;
+			}
+			if (normalized.length() > 0) {
+				normalized.append('/');
+			}
+			normalized.append(segment);
+		}
+		return normalized.toString();
+	}
+	
+	/**
+	 * Suffix of the local branches of the merges, unique to the build as the branches are shared by the worktrees
+	 */
+	private static String getWorktreeBranchSuffix(AbstractBuild<?, ?> build) {
+		return "-" + build.getParent().getFullName().replaceAll("[^A-Za-z0-9._-]", "_") + "-" + build.getNumber();
+	}
+	
 	/**
 	 * Creates a {@link GithubInitializerAction} for the build.
 	 * While initializing the subModules names are also generated and set to the {@link GithubInitializerAction}
@@ -114,7 +237,8 @@ public class MaidsafeJenkinsBuilder extends Builder {
 		GithubInitializerAction initializerAction;
 		GitHubHelper githubHelper;	
 		initializerAction = new GithubInitializerAction();
-		githubHelper = new GitHubHelper(superProjectName, projectPath, logger, script, defaultBaseBranch, checkoutAction);
+		githubHelper = new GitHubHelper(superProjectName, projectPath, logger, getGitBackend(projectPath, script),
+				defaultBaseBranch, checkoutAction);
 		githubHelper.setAccessToken(getDescriptor().getGithubToken()); // TODO Remove this setter		
 		initializerAction.setOauthAccessToken(getDescriptor().getGithubToken());
 		initializerAction.setModules(githubHelper.getModuleNames());	
@@ -130,13 +254,36 @@ public class MaidsafeJenkinsBuilder extends Builder {
 	 * @return {@link Map} of submodules as keys and their corresonding PullRequest details
 	 * @throws Exception
 	 */
-	private Map<String, Map<String, Object>> getPullRequest(String issueKey, List<String> modules, PrintStream logger) throws Exception {
+	private Map<String, PullRequest> getPullRequest(String issueKey, List<String> modules, PrintStream logger) throws Exception {
 		GitHubPullRequestHelper ghprh;
 		ghprh = new GitHubPullRequestHelper(orgName, modules, logger);
 		ghprh.setAccessToken(getDescriptor().getGithubToken());
-		return ghprh.getMatchingPR(issueKey,
-				GitHubPullRequestHelper.Filter.OPEN,
-				GitHubPullRequestHelper.PR_MATCH_STRATERGY.BRANCH_NAME_STARTS_WITH_IGNORE_CASE);
+		ghprh.setMaxConcurrentRequests(getDescriptor().getMaxConcurrentRequests());
+		ghprh.setLookupMode(GitHubPullRequestHelper.LookupMode.fromName(prLookupMode));
+		return ghprh.getMatchingPR(issueKey, GitHubPullRequestHelper.Filter.OPEN, getPrMatcher());
+	}
+	
+	/**
+	 * Commands to initialise the submodules. When the mirror cache is enabled the submodules borrow the objects
+	 * from the mirrors on the agent, see {@link GitMirrorCache}. When the workspace has been checked out before
+	 * only the submodules which are not initialised yet are updated.
+	 */
+	private List<String> getSubmoduleUpdateCommands(AbstractBuild<?, ?> build, PrintStream logger, boolean warm) {
+		GitMirrorCache mirrorCache;
+		List<String> shellCommands = new ArrayList<String>();
+		mirrorCache = useMirrorCache ? GitMirrorCache.forNode(build.getBuiltOn()) : null;
+		if (mirrorCache == null && warm) {
+			// the initialised submodules are checked out to the base branch by the GitHubHelper
+			shellCommands.add("git submodule status | sed -n 's/^-[0-9a-f]* \\([^ ]*\\).*/\\1/p' | while read path; do"
+					+ " git submodule update --init -- \"$path\"; done");
+			return shellCommands;
+		}
+		if (mirrorCache == null) {
+			shellCommands.add("git submodule update --init");
+			return shellCommands;
+		}
+		logger.println("Updating submodules using the mirrors in " + mirrorCache.getMirrorRoot().getRemote());
+		return mirrorCache.getSubmoduleUpdateCommands();
 	}
 	
 	/*
@@ -161,22 +308,36 @@ public class MaidsafeJenkinsBuilder extends Builder {
 		GithubCheckoutAction checkoutAction;
 		GithubInitializerAction initializerAction = null;		
 		GitHubHelper githubHelper;
-		Map<String, Map<String, Object>> pullRequest;
+		Map<String, PullRequest> pullRequest;
 		final String ISSUE_KEY_PARAM = "issueKey";
 		String issueKey;
-		ShellScript script;
+		ShellScript script = null;
+		WorkspaceState workspaceState;
+		String subFolder;
 		FilePath rootDir;
 		PrintStream logger;
 		CommitStatus commitStatus;
+		CommitStatusAction statusAction;
 		logger = listener.getLogger();
 		checkoutAction = new GithubCheckoutAction();		
 		checkoutAction.setBaseBranch(defaultBaseBranch);
 		checkoutAction.setBuildPassed(true);
-		rootDir = new FilePath(new File(build.getWorkspace() + "/" + repoSubFolder));		
-		logger.println("Git REPO :: " + rootDir.getRemote());
 		try {			
+			subFolder = normalizeSubFolder(repoSubFolder);
+			if (subFolder == null) {
+				// the directory is replaced by the worktree, it must not point out of the workspace
+				throw new Exception("The super project subfolder " + repoSubFolder + " is not within the workspace");
+			}
+			rootDir = build.getWorkspace().child(subFolder);
+			logger.println("Git REPO :: " + rootDir.getRemote());
+			BranchCleanup.get().awaitPending(BranchCleanup.getWorkspaceKey(build));
+			workspaceState = WorkspaceState.forWorkspace(BranchCleanup.getWorkspaceKey(build));
 			envVars = build.getEnvironment(listener);						
 			script = new ShellScript(build.getWorkspace(), launcher, envVars);
+			script.startSession();
+			if (useWorktrees) {
+				createWorktrees(build, rootDir, script, logger);
+			}
 			/******** PRAMETERS RECEIVED **********/
 			issueKey = envVars.get(ISSUE_KEY_PARAM, "").trim();		
 			/**************************************/
@@ -196,15 +357,18 @@ public class MaidsafeJenkinsBuilder extends Builder {
 				}
 				build.addAction(initializerAction);							
 			}					
-			if (updateCommitStatusToPending) {					
-				commitStatus = new CommitStatus(orgName, logger, initializerAction.isTestingMode(), initializerAction.getOauthAccessToken());				
+			if (updateCommitStatusToPending) {
+				statusAction = new CommitStatusAction();
+				build.addAction(statusAction);
+				commitStatus = new CommitStatus(orgName, logger, initializerAction.isTestingMode(),
+						initializerAction.getOauthAccessToken(), statusAction);
 				commitStatus.updateAll(initializerAction.getPullRequests(), State.PENDING, build.getUrl());
 				return true;
 			}			
 			build.addAction(checkoutAction);					
-			List<String> shellCommands = new ArrayList<String>();
-			shellCommands.add("git submodule update --init");
-			script.execute(shellCommands);			
+			if (!useWorktrees) {
+				script.execute(getSubmoduleUpdateCommands(build, logger, workspaceState.isWarm()));
+			}
 			pullRequest = initializerAction.getPullRequests();			
 			if (!issueKey.isEmpty() && (pullRequest == null || pullRequest.isEmpty())) {				
 				checkoutAction.setBuildPassed(false);
@@ -213,17 +377,31 @@ public class MaidsafeJenkinsBuilder extends Builder {
 				return false;
 			}				
 			updateCheckoutActionForPR(checkoutAction, pullRequest);
-			githubHelper = new GitHubHelper(superProjectName, rootDir, logger, script,
+			githubHelper = new GitHubHelper(superProjectName, rootDir, logger, getGitBackend(rootDir, script),
 					defaultBaseBranch, checkoutAction);			
+			githubHelper.setParallelism(getDescriptor().getCheckoutParallelism());
+			githubHelper.setWorkspaceState(workspaceState);
+			if (useWorktrees) {
+				githubHelper.setWorktreeMode(getWorktreeBranchSuffix(build));
+				checkoutAction.setWorktreeMode(true);
+			}
+			checkoutAction.setModulePaths(githubHelper.getModulePaths());
 			checkoutAction = githubHelper.checkoutModules(pullRequest);						
 			checkoutAction.setScript(script);
+			// the workspace is released before the cleanup is scheduled, the next build has to wait for it
+			BranchCleanup.get().reserve(BranchCleanup.getWorkspaceKey(build));
 			checkoutAction.setBaseBranch(defaultBaseBranch);				
 		} catch (Exception exception) {				
 			checkoutAction.setReasonForFailure("Error Occured :: " + exception.getMessage());
 			checkoutAction.setBuildPassed(false);
 			listener.getLogger().println(exception);
 			exception.printStackTrace();
-		}	
+		} finally {
+			// the session of the script handed over to the checkout action is ended by the BuildRunlistener
+			if (script != null && checkoutAction.getScript() != script) {
+				script.close();
+			}
+		}
 		if (initializerAction != null && !checkoutAction.isBuilPassed()) {
 			initializerAction.setFailureReason(build.getProject().getFullName() + " #" + build.number + " - " + checkoutAction.getReasonForFailure());
 		}
@@ -240,41 +418,25 @@ public class MaidsafeJenkinsBuilder extends Builder {
 	public static class BuildRunlistener extends RunListener<Run> implements Serializable {
 
 		/**
-		 * When the build run is completed, the temporary branches created are to be deleted.		 
+		 * When the build run is completed, the temporary branches created are to be deleted.
+		 * The branches are deleted in the background by the {@link BranchCleanup}, which also ends the script.
 		 */
 		@Override
 		public void onCompleted(Run r, TaskListener tl) {			
 			super.onCompleted(r, tl);
-			try {
-				List<String> cmds;
-				List<String> tempList = new ArrayList<String>();
-				String targetBranch;
-				HashMap<String, String> branchesToDelete;
-				String DEL_BRANCH_CMD = "git checkout %s && git branch -D %s";
-				String DEL_BRANCH_SUBMOD_CMD = "git submodule foreach 'git checkout %s && git branch -D %s || : '";
-				GithubCheckoutAction checkoutAction = r.getAction(GithubCheckoutAction.class);		
-				if (checkoutAction == null || !checkoutAction.isBuilPassed()) {
-					return;
-				}
+			List<String> cmds = new ArrayList<String>();
+			GithubCheckoutAction action = r.getAction(GithubCheckoutAction.class);
+			if (action == null || action.getScript() == null) {
+				return;
+			}
+			if (action.isBuilPassed() && !action.getBranchUsedByModule().isEmpty()) {
 				tl.getLogger().println("Cleaning up the temporary branches");
-				branchesToDelete = (HashMap<String, String>) checkoutAction.getGithubCheckoutAction().get("branchUsedByModule");							
-				Iterator<String> branchesInterator = branchesToDelete.keySet().iterator();
-				// TODO instead of deleting in all modules - delete only needed branches by navigating to module
-				while (branchesInterator.hasNext()) {
-					targetBranch = branchesToDelete.get(branchesInterator.next());
-					if (tempList.contains(targetBranch)) {
-						continue;
-					}
-					tempList.add(targetBranch);
-					cmds = new ArrayList<String>();
-					cmds.add(String.format(DEL_BRANCH_CMD, checkoutAction.getBaseBranch(), targetBranch));
-					cmds.add(String.format(DEL_BRANCH_SUBMOD_CMD, checkoutAction.getBaseBranch(),
-							targetBranch));
-					checkoutAction.getScript().execute(cmds);
-				}				
-			} catch (Exception ex) {
-				Logger.getLogger(MaidsafeJenkinsBuilder.class.getName()).log(Level.SEVERE, null, ex);
+				cmds = BranchCleanup.getCommands(action.isWorktreeMode() ? null : action.getBaseBranch(),
+						action.getBranchUsedByModule(),
+						action.getModulePaths());
 			}
+			BranchCleanup.get().schedule(r instanceof AbstractBuild ? BranchCleanup.getWorkspaceKey((AbstractBuild) r)
+					: null, action.getScript(), cmds);
 		}
 
 	}
@@ -282,12 +444,35 @@ public class MaidsafeJenkinsBuilder extends Builder {
 	@Extension
 	public static class DescriptorImpl extends  BuildStepDescriptor<Builder> {
 		private String githubToken;
+		private int maxConcurrentRequests = GitHubPullRequestHelper.DEFAULT_MAX_CONCURRENT_REQUESTS;
+		private int checkoutParallelism = GitHubHelper.DEFAULT_PARALLELISM;
+		private int maxConnections = GitHubTransport.DEFAULT_MAX_CONNECTIONS;
+		private int maxConnectionsPerHost = GitHubTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+		private int connectTimeout = GitHubTransport.DEFAULT_CONNECT_TIMEOUT;
+		private int socketTimeout = GitHubTransport.DEFAULT_SOCKET_TIMEOUT;
+		private int prCacheSize = PullRequestListCache.DEFAULT_MAX_ENTRIES;
+		private int prCacheTtl = PullRequestListCache.DEFAULT_TTL;
+		private int statusPublisherThreads = CommitStatusPublisher.DEFAULT_WORKERS;
+		private int apiRequestsPerSecond = RateLimitScheduler.DEFAULT_REQUESTS_PER_SECOND;
+		private int apiBurst = RateLimitScheduler.DEFAULT_BURST;
+		private int buildCacheSize = BuildOutputCache.DEFAULT_MAX_SIZE;
+		private String webhookSecret;
 		/**
 		 * In order to load the persisted global configuration, you have to call
 		 * load() in the constructor.
 		 */
 		public DescriptorImpl() {
 			load();
+			applyConfiguration();
+		}
+		
+		private void applyConfiguration() {
+			GitHubTransport.get().configure(maxConnections, maxConnectionsPerHost, connectTimeout, socketTimeout);
+			PullRequestListCache.get().configure(prCacheSize, prCacheTtl);
+			CommitStatusPublisher.get().setWorkers(statusPublisherThreads);
+			RateLimitScheduler.get().configure(apiRequestsPerSecond, apiBurst);
+			BuildOutputCache.setMaxSize(buildCacheSize);
+			PullRequestIndex.get().setEnabled(webhookSecret != null && !webhookSecret.isEmpty());
 		}
 			
 
@@ -316,6 +501,38 @@ public class MaidsafeJenkinsBuilder extends Builder {
 			return FormValidation.ok();
 		}
 
+		public FormValidation doCheckRepoSubFolder(@QueryParameter String value, @QueryParameter boolean useWorktrees) {
+			if (normalizeSubFolder(value) == null)
+				return FormValidation.error("The subfolder must be relative to the workspace, without '..'");
+			if (useWorktrees && !isSubFolder(value))
+				return FormValidation.error("Please set the subfolder of the super project, required for the worktrees");
+			return FormValidation.ok();
+		}
+
+		public FormValidation doCheckMaxConcurrentRequests(@QueryParameter String value) {
+			return FormValidation.validatePositiveInteger(value);
+		}
+
+		public FormValidation doCheckCheckoutParallelism(@QueryParameter String value) {
+			return FormValidation.validatePositiveInteger(value);
+		}
+
+		public ListBoxModel doFillGitBackendItems() {
+			ListBoxModel items = new ListBoxModel();
+			for (GitBackendType type : GitBackendType.values()) {
+				items.add(type.getDisplayName(), type.name());
+			}
+			return items;
+		}
+
+		public ListBoxModel doFillPrLookupModeItems() {
+			ListBoxModel items = new ListBoxModel();
+			for (GitHubPullRequestHelper.LookupMode mode : GitHubPullRequestHelper.LookupMode.values()) {
+				items.add(mode.getDisplayName(), mode.name());
+			}
+			return items;
+		}
+
 		public FormValidation doCheckDefaultBaseBranch(@QueryParameter String value) throws IOException,
 				ServletException {
 			if (value.length() == 0)
@@ -329,7 +546,21 @@ public class MaidsafeJenkinsBuilder extends Builder {
 
 		@Override
 		public boolean configure(StaplerRequest req, JSONObject formData) throws Descriptor.FormException {					
-			githubToken = formData.getString("githubToken");				
+			githubToken = formData.getString("githubToken");
+			webhookSecret = formData.optString("webhookSecret", null);
+			maxConcurrentRequests = formData.optInt("maxConcurrentRequests", GitHubPullRequestHelper.DEFAULT_MAX_CONCURRENT_REQUESTS);
+			checkoutParallelism = formData.optInt("checkoutParallelism", GitHubHelper.DEFAULT_PARALLELISM);
+			maxConnections = formData.optInt("maxConnections", GitHubTransport.DEFAULT_MAX_CONNECTIONS);
+			maxConnectionsPerHost = formData.optInt("maxConnectionsPerHost", GitHubTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+			connectTimeout = formData.optInt("connectTimeout", GitHubTransport.DEFAULT_CONNECT_TIMEOUT);
+			socketTimeout = formData.optInt("socketTimeout", GitHubTransport.DEFAULT_SOCKET_TIMEOUT);
+			prCacheSize = formData.optInt("prCacheSize", PullRequestListCache.DEFAULT_MAX_ENTRIES);
+			prCacheTtl = formData.optInt("prCacheTtl", PullRequestListCache.DEFAULT_TTL);
+			statusPublisherThreads = formData.optInt("statusPublisherThreads", CommitStatusPublisher.DEFAULT_WORKERS);
+			apiRequestsPerSecond = formData.optInt("apiRequestsPerSecond", RateLimitScheduler.DEFAULT_REQUESTS_PER_SECOND);
+			apiBurst = formData.optInt("apiBurst", RateLimitScheduler.DEFAULT_BURST);
+			buildCacheSize = formData.optInt("buildCacheSize", BuildOutputCache.DEFAULT_MAX_SIZE);
+			applyConfiguration();
 			save();
 			return super.configure(req, formData);
 		}
@@ -344,6 +575,91 @@ public class MaidsafeJenkinsBuilder extends Builder {
 		public String getGithubToken() {
 			return githubToken;
 		}
+		
+		/**
+		 * Secret of the Github webhooks, see {@link GitHubWebhook}. The webhook is disabled while it is not set
+		 */
+		public String getWebhookSecret() {
+			return webhookSecret;
+		}
+		
+		/**
+		 * Maximum number of Pull Request listings fetched from Github in parallel
+		 */
+		public int getMaxConcurrentRequests() {
+			return maxConcurrentRequests > 0 ? maxConcurrentRequests : GitHubPullRequestHelper.DEFAULT_MAX_CONCURRENT_REQUESTS;
+		}
+
+		/**
+		 * Maximum number of modules checked out and merged in parallel
+		 */
+		public int getCheckoutParallelism() {
+			return checkoutParallelism > 0 ? checkoutParallelism : GitHubHelper.DEFAULT_PARALLELISM;
+		}
+
+		public int getMaxConnections() {
+			return maxConnections;
+		}
+
+		public int getMaxConnectionsPerHost() {
+			return maxConnectionsPerHost;
+		}
+
+		/**
+		 * Connect timeout for the Github API in seconds
+		 */
+		public int getConnectTimeout() {
+			return connectTimeout;
+		}
+
+		/**
+		 * Read timeout for the Github API in seconds
+		 */
+		public int getSocketTimeout() {
+			return socketTimeout;
+		}
+
+		/**
+		 * Number of Pull Request listings held in the {@link PullRequestListCache}
+		 */
+		public int getPrCacheSize() {
+			return prCacheSize;
+		}
+
+		/**
+		 * Time in seconds after which a cached Pull Request listing is evicted
+		 */
+		public int getPrCacheTtl() {
+			return prCacheTtl;
+		}
+
+		/**
+		 * Number of commit statuses posted to Github in parallel
+		 */
+		public int getStatusPublisherThreads() {
+			return statusPublisherThreads;
+		}
+
+		/**
+		 * Sustained rate of the Github API requests per access token
+		 */
+		public int getApiRequestsPerSecond() {
+			return apiRequestsPerSecond;
+		}
+
+		/**
+		 * Number of Github API requests allowed in a burst above the sustained rate
+		 */
+		public int getApiBurst() {
+			return apiBurst;
+		}
+
+		/**
+		 * Size limit in MB of the {@link BuildOutputCache} on every node
+		 */
+		public int getBuildCacheSize() {
+			return buildCacheSize;
+		}
 	}
 
 	// Overridden for better type safety.
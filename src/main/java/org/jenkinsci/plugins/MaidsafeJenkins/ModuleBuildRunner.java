@@ -0,0 +1,272 @@
+package org.jenkinsci.plugins.MaidsafeJenkins;
+
+import hudson.FilePath;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.ModuleBuildResult;
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.ModuleBuildResult.Status;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.BuildOutputCache;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ModuleDependencyGraph;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+
+/**
+ * Runs the build commands of the modules concurrently, in the topological order of the declared dependencies.
+ * A module is started once all the modules it depends on have been built successfully, and is skipped when
+ * any of them has failed. The complete output of every module is written to its own log file.
+ * When a {@link BuildOutputCache} is set, the outputs of a module are restored from the cache instead of building
+ * the module again, and are stored in the cache once the module has been built. The cache key covers the HEAD of
+ * the module and the HEADs of all the modules it depends on, so that a module is built again when one of its
+ * dependencies has changed.
+ */
+class ModuleBuildRunner {
+	private final ShellScript script;
+	private final ModuleDependencyGraph graph;
+	private final int parallelism;
+	private final File logDir;
+	private final PrintStream logger;
+	private BuildOutputCache cache;
+	private String cacheIncludes;
+	private FilePath workspace;
+	private Map<String, String> modulePaths;
+	private final Map<String, String> heads = new ConcurrentHashMap<String, String>();
+
+	ModuleBuildRunner(ShellScript script, ModuleDependencyGraph graph, int parallelism, File logDir, PrintStream logger) {
+		this.script = script;
+		this.graph = graph;
+		this.parallelism = Math.max(1, parallelism);
+		this.logDir = logDir;
+		this.logger = logger;
+	}
+
+	/**
+	 * @param cache cache of the node
+	 * @param includes glob of the outputs cached, relative to the module directory
+	 * @param workspace workspace of the build
+	 * @param modulePaths paths of all the modules relative to the workspace, including the ones which are not built
+	 */
+	void setCache(BuildOutputCache cache, String includes, FilePath workspace, Map<String, String> modulePaths) {
+		this.cache = cache;
+		this.cacheIncludes = includes;
+		this.workspace = workspace;
+		this.modulePaths = modulePaths;
+	}
+
+	/**
+	 * @return path of the module relative to the workspace, the module name is not case sensitive
+	 */
+	private String getModulePath(String module) {
+		if (modulePaths.containsKey(module)) {
+			return modulePaths.get(module);
+		}
+		for (Map.Entry<String, String> entry : modulePaths.entrySet()) {
+			if (entry.getKey().equalsIgnoreCase(module)) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return HEAD of the module, resolved once per run; null if it is unknown
+	 */
+	private String getHead(String module) throws IOException, InterruptedException {
+		String head;
+		String path = getModulePath(module);
+		if (path == null) {
+			return null;
+		}
+		head = heads.get(path);
+		if (head == null) {
+			head = BuildOutputCache.getHead(workspace.child(path));
+			if (head != null) {
+				heads.put(path, head);
+			}
+		}
+		return head;
+	}
+
+	static File getLogFile(File logDir, String module) {
+		return new File(logDir, module + ".log");
+	}
+
+	/**
+	 * @param moduleCommands commands of each module, in the order the modules are preferred
+	 * @return result of every module, in the order of completion
+	 */
+	List<ModuleBuildResult> run(Map<String, List<String>> moduleCommands) throws InterruptedException {
+		String module;
+		String failedDependency;
+		boolean ready;
+		boolean changed;
+		int running = 0;
+		ModuleBuildResult result;
+		Iterator<String> iterator;
+		Set<String> pending = new LinkedHashSet<String>(moduleCommands.keySet());
+		Map<String, ModuleBuildResult> completed = new LinkedHashMap<String, ModuleBuildResult>();
+		ExecutorService pool;
+		CompletionService<ModuleBuildResult> completionService;
+		if (moduleCommands.isEmpty()) {
+			return new ArrayList<ModuleBuildResult>();
+		}
+		logDir.mkdirs();
+		pool = Executors.newFixedThreadPool(Math.min(parallelism, moduleCommands.size()), new DaemonThreadFactory());
+		completionService = new ExecutorCompletionService<ModuleBuildResult>(pool);
+		try {
+			while (true) {
+				do {
+					changed = false;
+					iterator = pending.iterator();
+					while (iterator.hasNext()) {
+						module = iterator.next();
+						ready = true;
+						failedDependency = null;
+						for (String dependency : graph.getDependencies(module)) {
+							if (!moduleCommands.containsKey(dependency)) {
+								continue; // not built in this run
+							}
+							if (!completed.containsKey(dependency)) {
+								ready = false;
+							} else if (!completed.get(dependency).isSuccess()) {
+								failedDependency = dependency;
+							}
+						}
+						if (failedDependency != null) {
+							iterator.remove();
+							record(completed, new ModuleBuildResult(module, Status.SKIPPED, -1, 0,
+									"dependency " + failedDependency + " has not been built"));
+							changed = true;
+						} else if (ready) {
+							iterator.remove();
+							completionService.submit(new ModuleBuildTask(module, moduleCommands.get(module)));
+							running++;
+						}
+					}
+				} while (changed);
+				if (running == 0) {
+					break;
+				}
+				try {
+					result = completionService.take().get();
+				} catch (ExecutionException ex) {
+					throw new IllegalStateException(ex.getCause());
+				}
+				running--;
+				record(completed, result);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		for (String cyclic : pending) {
+			record(completed, new ModuleBuildResult(cyclic, Status.SKIPPED, -1, 0, "cyclic dependency"));
+		}
+		return new ArrayList<ModuleBuildResult>(completed.values());
+	}
+
+	private void record(Map<String, ModuleBuildResult> completed, ModuleBuildResult result) {
+		completed.put(result.getModule(), result);
+		logger.println("[" + result.getModule() + "] " + result);
+	}
+
+	private class ModuleBuildTask implements Callable<ModuleBuildResult> {
+		private final String module;
+		private final List<String> commands;
+
+		ModuleBuildTask(String module, List<String> commands) {
+			this.module = module;
+			this.commands = commands;
+		}
+
+		public ModuleBuildResult call() {
+			int exitCode;
+			String cacheKey = null;
+			OutputStream log = null;
+			long start = System.currentTimeMillis();
+			logger.println("[" + module + "] Build started");
+			try {
+				log = new FileOutputStream(getLogFile(logDir, module));
+				if (cache != null) {
+					cacheKey = getCacheKey();
+					if (cacheKey != null && cache.restore(cacheKey, workspace.child(getModulePath(module)))) {
+						log.write(("Outputs restored from the build cache :: " + cacheKey + "\n").getBytes("UTF-8"));
+						return new ModuleBuildResult(module, Status.CACHED, 0, System.currentTimeMillis() - start,
+								"restored from the build cache");
+					}
+				}
+				exitCode = script.execute(commands, log, log);
+				if (exitCode == 0 && cacheKey != null) {
+					storeOutputs(cacheKey);
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return new ModuleBuildResult(module, Status.FAILURE, -1, System.currentTimeMillis() - start,
+						"interrupted");
+			} catch (Exception ex) {
+				return new ModuleBuildResult(module, Status.FAILURE, -1, System.currentTimeMillis() - start,
+						ex.getMessage());
+			} finally {
+				if (log != null) {
+					try {
+						log.close();
+					} catch (Exception ignored) {
+						// the log is incomplete
+					}
+				}
+			}
+			return new ModuleBuildResult(module, exitCode == 0 ? Status.SUCCESS : Status.FAILURE, exitCode,
+					System.currentTimeMillis() - start, null);
+		}
+
+		/**
+		 * @return null if the module can not be cached, ie the HEAD of the module or of a dependency is unknown
+		 */
+		private String getCacheKey() throws IOException, InterruptedException {
+			String head = getHead(module);
+			String dependencyHead;
+			SortedMap<String, String> dependencyHeads = new TreeMap<String, String>();
+			if (head == null) {
+				return null;
+			}
+			for (String dependency : graph.getTransitiveDependencies(module)) {
+				dependencyHead = getHead(dependency);
+				if (dependencyHead == null) {
+					logger.println("[" + module + "] Not cached, the HEAD of the dependency " + dependency + " is unknown");
+					return null;
+				}
+				dependencyHeads.put(dependency, dependencyHead);
+			}
+			return BuildOutputCache.key(getModulePath(module), head, dependencyHeads, commands);
+		}
+
+		private void storeOutputs(String cacheKey) throws InterruptedException {
+			try {
+				cache.store(cacheKey, workspace.child(getModulePath(module)), cacheIncludes);
+			} catch (IOException ex) {
+				// the module has been built, only the next build will not find it in the cache
+				logger.println("[" + module + "] Outputs could not be cached :: " + ex.getMessage());
+			}
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.MaidsafeJenkins.actions;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 // TODO Refactor
 public class ActionSummary {
@@ -16,6 +17,10 @@ public class ActionSummary {
 	private final String REASON_KEY = "failureReason";
 	private final String MODULES_WITH_MATCHING_KEY = "modulesMatchingIssue";	
 	private final String BRANCH_USED_BY_MODULE = "branchUsedByModule";	
+	private final String MODULE_PATHS_KEY = "modulePaths";
+	private final String AFFECTED_MODULES_KEY = "affectedModules";
+	private final String MODULE_BUILD_RESULTS_KEY = "moduleBuildResults";
+	private final String WORKTREE_MODE_KEY = "worktreeMode";
 	
 	public ActionSummary() {
 		summary = new HashMap<String, Object>();
@@ -85,6 +90,61 @@ public class ActionSummary {
 		((HashMap<String, String>) summary.get(BRANCH_USED_BY_MODULE)).put(module, branchName);
 	}
 	
+	/**
+	 * Temporary branches created for merging the Pull Requests, keyed by the module they were created in
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, String> getBranchUsedByModule() {
+		return (Map<String, String>) summary.get(BRANCH_USED_BY_MODULE);
+	}
+	
+	/**
+	 * Paths of the modules relative to the super project, keyed by the module name
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, String> getModulePaths() {
+		return (Map<String, String>) summary.get(MODULE_PATHS_KEY);
+	}
+
+	public void setModulePaths(Map<String, String> modulePaths) {
+		summary.put(MODULE_PATHS_KEY, new HashMap<String, String>(modulePaths));
+	}
+
+	/**
+	 * Modules changed by the Pull Requests and the modules depending on them, null until computed by the build
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> getAffectedModules() {
+		return (List<String>) summary.get(AFFECTED_MODULES_KEY);
+	}
+
+	public void setAffectedModules(List<String> affectedModules) {
+		summary.put(AFFECTED_MODULES_KEY, affectedModules);
+	}
+	
+	/**
+	 * Results of the modules built separately, null if the modules were not built separately
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ModuleBuildResult> getModuleBuildResults() {
+		return (List<ModuleBuildResult>) summary.get(MODULE_BUILD_RESULTS_KEY);
+	}
+
+	public void setModuleBuildResults(List<ModuleBuildResult> moduleBuildResults) {
+		summary.put(MODULE_BUILD_RESULTS_KEY, moduleBuildResults);
+	}
+	
+	/**
+	 * True if the modules were checked out as worktrees, see {@link org.jenkinsci.plugins.MaidsafeJenkins.github.GitWorktreeCache}
+	 */
+	public boolean isWorktreeMode() {
+		return Boolean.TRUE.equals(summary.get(WORKTREE_MODE_KEY));
+	}
+
+	public void setWorktreeMode(boolean worktreeMode) {
+		summary.put(WORKTREE_MODE_KEY, worktreeMode);
+	}
+	
 	public HashMap<String, Object> getSummary() {
 		return summary;
 	}
@@ -0,0 +1,141 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.actions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatusPublisher;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatusPublisher.Delivery;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Records the delivery results of the commit statuses posted for the build.
+ * The statuses are posted asynchronously by {@link CommitStatusPublisher}, the build is saved as the results arrive.
+ */
+public class CommitStatusAction implements RunAction2, CommitStatusPublisher.Callback {
+	private static final Logger LOGGER = Logger.getLogger(CommitStatusAction.class.getName());
+	private final String DISPLAY_NAME = "Github Commit Status";
+	private final List<DeliveryResult> results = new ArrayList<DeliveryResult>();
+	private transient Run<?, ?> run;
+
+	public static enum Result {
+		DELIVERED, FAILED, SUPERSEDED
+	}
+
+	public void onAttached(Run<?, ?> r) {
+		run = r;
+	}
+
+	public void onLoad(Run<?, ?> r) {
+		run = r;
+	}
+
+	public Run<?, ?> getRun() {
+		return run;
+	}
+
+	public String getIconFileName() {
+		return null;
+	}
+
+	public String getDisplayName() {
+		return DISPLAY_NAME;
+	}
+
+	public String getUrlName() {
+		return "commitStatus";
+	}
+
+	public synchronized List<DeliveryResult> getResults() {
+		return new ArrayList<DeliveryResult>(results);
+	}
+
+	public void onDelivered(Delivery delivery, int statusCode) {
+		record(new DeliveryResult(delivery, Result.DELIVERED, statusCode, null));
+	}
+
+	public void onFailed(Delivery delivery, int statusCode, String reason) {
+		record(new DeliveryResult(delivery, Result.FAILED, statusCode, reason));
+	}
+
+	public void onSuperseded(Delivery delivery) {
+		record(new DeliveryResult(delivery, Result.SUPERSEDED, 0, null));
+	}
+
+	private void record(DeliveryResult result) {
+		synchronized (this) {
+			results.add(result);
+		}
+		if (run == null) {
+			return;
+		}
+		try {
+			run.save();
+		} catch (IOException ex) {
+			LOGGER.log(Level.WARNING, "Failed to save the commit status results of " + run, ex);
+		}
+	}
+
+	/**
+	 * Result of posting the status of one module
+	 */
+	public static class DeliveryResult {
+		private final String module;
+		private final String sha;
+		private final String state;
+		private final Result result;
+		private final int statusCode;
+		private final int attempts;
+		private final String message;
+		private final Date time;
+
+		DeliveryResult(Delivery delivery, Result result, int statusCode, String message) {
+			this.module = delivery.getRepo();
+			this.sha = delivery.getSha();
+			this.state = delivery.getState().toString();
+			this.attempts = delivery.getAttempts();
+			this.result = result;
+			this.statusCode = statusCode;
+			this.message = message;
+			this.time = new Date();
+		}
+
+		public String getModule() {
+			return module;
+		}
+
+		public String getSha() {
+			return sha;
+		}
+
+		public String getState() {
+			return state;
+		}
+
+		public Result getResult() {
+			return result;
+		}
+
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		public int getAttempts() {
+			return attempts;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public Date getTime() {
+			return time;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.actions;
+
+import java.util.List;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestIndex;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestListCache;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.RateLimitScheduler;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.BuildOutputCache;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+/**
+ * Manage Jenkins page showing how the plugin is using the Github API.
+ * Exposes the hit, miss and 304 counters of the {@link PullRequestListCache} and the quota of the access tokens
+ * tracked by the {@link RateLimitScheduler}, along with the counters of the {@link BuildOutputCache}.
+ */
+@Extension
+public class GitHubApiManagementLink extends ManagementLink {
+	private final String DISPLAY_NAME = "MAIDSafe Github API";
+	private final String DESCRIPTION = "Pull Request cache and Github API rate limits of the MAIDSafe CI Builder";
+
+	public String getIconFileName() {
+		return "/plugin/MaidsafeJenkins/icons/octocat.jpg";
+	}
+
+	public String getDisplayName() {
+		return DISPLAY_NAME;
+	}
+
+	@Override
+	public String getDescription() {
+		return DESCRIPTION;
+	}
+
+	public String getUrlName() {
+		return "maidsafe-github-api";
+	}
+
+	public PullRequestListCache getPullRequestCache() {
+		return PullRequestListCache.get();
+	}
+
+	public PullRequestIndex getPullRequestIndex() {
+		return PullRequestIndex.get();
+	}
+
+	public List<RateLimitScheduler.TokenState> getRateLimits() {
+		return RateLimitScheduler.get().getStates();
+	}
+
+	public BuildOutputCache.Stats getBuildCache() {
+		return BuildOutputCache.getStats();
+	}
+
+	@RequirePOST
+	public HttpResponse doClearCache() {
+		Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+		PullRequestListCache.get().clear();
+		PullRequestIndex.get().clear();
+		return HttpResponses.redirectToDot();
+	}
+
+}
@@ -0,0 +1,195 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.actions;
+
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import jenkins.model.Jenkins;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.MaidsafeJenkinsBuilder;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestIndex;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Receives the pull_request events of the Github webhooks of the organization repositories and applies them to
+ * the {@link PullRequestIndex}, so the Pull Requests of a build are matched without calling the Github API.
+ * <p>
+ * The webhook has to be created with the content type application/json and the secret configured for the
+ * MAIDSafe CI Builder. The payloads are verified against the X-Hub-Signature-256 (or X-Hub-Signature) header,
+ * the requests are rejected while no secret is configured.
+ */
+@Extension
+public class GitHubWebhook implements UnprotectedRootAction {
+	public static final String URL_NAME = "maidsafe-github-webhook";
+	private static final int MAX_PAYLOAD_SIZE = 5 * 1024 * 1024;
+	private static final Logger LOGGER = Logger.getLogger(GitHubWebhook.class.getName());
+
+	public String getIconFileName() {
+		return null;
+	}
+
+	public String getDisplayName() {
+		return null;
+	}
+
+	public String getUrlName() {
+		return URL_NAME;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		byte[] payload;
+		String event;
+		String secret = getSecret();
+		Map<String, Object> json;
+		if (!"POST".equals(req.getMethod())) {
+			rsp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Github webhook events are POSTed");
+			return;
+		}
+		if (secret == null || secret.isEmpty()) {
+			rsp.sendError(HttpServletResponse.SC_FORBIDDEN, "No webhook secret is configured");
+			return;
+		}
+		payload = readPayload(req.getInputStream());
+		if (payload == null) {
+			rsp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Payload is too large");
+			return;
+		}
+		if (!isSignatureValid(secret, payload, req.getHeader("X-Hub-Signature-256"), req.getHeader("X-Hub-Signature"))) {
+			rsp.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid signature");
+			return;
+		}
+		event = req.getHeader("X-GitHub-Event");
+		if ("pull_request".equals(event)) {
+			try {
+				json = (Map<String, Object>) new JSONParser().parse(new String(payload, "UTF-8"));
+			} catch (ParseException ex) {
+				rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid payload, the content type has to be application/json");
+				return;
+			}
+			if (!applyPullRequestEvent(json)) {
+				rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Incomplete pull_request event");
+				return;
+			}
+		}
+		rsp.setStatus(HttpServletResponse.SC_OK);
+		rsp.setContentType("text/plain;charset=UTF-8");
+		rsp.getWriter().print(event == null ? "ignored" : "ok " + event);
+	}
+
+	/**
+	 * @return false if the event does not hold the repository or the Pull Request
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean applyPullRequestEvent(Map<String, Object> json) {
+		Object fullName;
+		String[] repo;
+		PullRequest pullRequest;
+		Map<String, Object> repository = (Map<String, Object>) json.get("repository");
+		Map<String, Object> pullRequestJson = (Map<String, Object>) json.get("pull_request");
+		fullName = repository == null ? null : repository.get("full_name");
+		if (fullName == null || pullRequestJson == null || fullName.toString().indexOf('/') < 0) {
+			return false;
+		}
+		repo = fullName.toString().split("/", 2);
+		pullRequest = PullRequest.fromMap(pullRequestJson);
+		if (pullRequest.getHtmlUrl() == null || pullRequest.getHeadRef() == null) {
+			return false;
+		}
+		PullRequestIndex.get().update(repo[0], repo[1], pullRequest, "open".equals(pullRequestJson.get("state")));
+		LOGGER.fine("pull_request " + json.get("action") + " :: " + pullRequest);
+		return true;
+	}
+
+	private static String getSecret() {
+		MaidsafeJenkinsBuilder.DescriptorImpl descriptor = Jenkins.getInstance().getDescriptorByType(
+				MaidsafeJenkinsBuilder.DescriptorImpl.class);
+		return descriptor == null ? null : descriptor.getWebhookSecret();
+	}
+
+	/**
+	 * @return null if the payload exceeds {@link #MAX_PAYLOAD_SIZE}
+	 */
+	private static byte[] readPayload(InputStream in) throws IOException {
+		int read;
+		byte[] buffer = new byte[8192];
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		while ((read = in.read(buffer)) != -1) {
+			payload.write(buffer, 0, read);
+			if (payload.size() > MAX_PAYLOAD_SIZE) {
+				return null;
+			}
+		}
+		return payload.toByteArray();
+	}
+
+	/**
+	 * Verifies the HMAC of the payload, the SHA-256 signature is preferred when both are sent
+	 */
+	static boolean isSignatureValid(String secret, byte[] payload, String sha256Signature, String sha1Signature) {
+		if (sha256Signature != null) {
+			return isSignatureValid(secret, payload, sha256Signature, "sha256=", "HmacSHA256");
+		}
+		return sha1Signature != null && isSignatureValid(secret, payload, sha1Signature, "sha1=", "HmacSHA1");
+	}
+
+	private static boolean isSignatureValid(String secret, byte[] payload, String signature, String prefix,
+			String algorithm) {
+		Mac mac;
+		StringBuilder expected = new StringBuilder(prefix);
+		try {
+			mac = Mac.getInstance(algorithm);
+			mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), algorithm));
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		} catch (InvalidKeyException ex) {
+			return false;
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		for (byte b : mac.doFinal(payload)) {
+			expected.append(String.format("%02x", b));
+		}
+		// compared in constant time
+		return MessageDigest.isEqual(expected.toString().getBytes(), signature.trim().toLowerCase().getBytes());
+	}
+
+	/**
+	 * Github can not send the CSRF crumb
+	 */
+	@Extension
+	public static class CrumbExclusionImpl extends CrumbExclusion {
+
+		@Override
+		public boolean process(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+				throws IOException, ServletException {
+			String pathInfo = request.getPathInfo();
+			if (pathInfo != null && (pathInfo.equals("/" + URL_NAME) || pathInfo.startsWith("/" + URL_NAME + "/"))) {
+				chain.doFilter(request, response);
+				return true;
+			}
+			return false;
+		}
+	}
+
+}
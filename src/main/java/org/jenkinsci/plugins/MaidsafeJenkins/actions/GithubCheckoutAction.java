@@ -1,12 +1,25 @@
 package org.jenkinsci.plugins.MaidsafeJenkins.actions;
 
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.BuildScript;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
 import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 import hudson.Functions;
+import hudson.Util;
+import hudson.model.Run;
 import hudson.model.Action;
 import hudson.model.Api;
 
@@ -18,6 +31,11 @@ public class GithubCheckoutAction extends ActionSummary implements Action {
 	    
 	    private transient ShellScript script;
 	    private String orgName;
+	    private Map<String, PullRequest> matchedPullRequests;
+	    /**
+	     * Complete Pull Request JSON persisted by the older versions, migrated to matchedPullRequests on load
+	     */
+	    @Deprecated
 	    private Map<String, Map<String, Object>> actualPRList;
 	    
 	    public Api getApi() {
@@ -57,12 +75,41 @@ public class GithubCheckoutAction extends ActionSummary implements Action {
 			this.orgName = orgName;
 		}
 				
-		public Map<String, Map<String, Object>> getActualPRList() {
-			return actualPRList;
+		public Map<String, PullRequest> getActualPRList() {
+			return matchedPullRequests;
 		}
 
-		public void setActualPRList(Map<String, Map<String, Object>> matchingPR) {
-			this.actualPRList = matchingPR;
+		public void setActualPRList(Map<String, PullRequest> matchingPR) {
+			this.matchedPullRequests = matchingPR;
+		}
+		
+		/**
+		 * Serves the log of a module built separately, eg checkoutSummary/moduleLog?module=common
+		 */
+		public void doModuleLog(StaplerRequest req, StaplerResponse rsp, @QueryParameter String module) 
+				throws IOException {
+			File logFile;
+			Run<?, ?> run = req.findAncestorObject(Run.class);
+			if (run == null || module == null || !module.matches("[A-Za-z0-9._-]+")) {
+				rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			logFile = new File(BuildScript.getModuleLogDir(run), module + ".log");
+			if (!logFile.isFile()) {
+				rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			rsp.setContentType("text/plain;charset=UTF-8");
+			Util.copyStreamAndClose(new FileInputStream(logFile), rsp.getOutputStream());
+		}
+		
+		@SuppressWarnings("deprecation")
+		protected Object readResolve() {
+			if (actualPRList != null) {
+				matchedPullRequests = PullRequest.fromMaps(actualPRList);
+				actualPRList = null;
+			}
+			return this;
 		}
 	   	    	  
 }
@@ -2,6 +2,9 @@ package org.jenkinsci.plugins.MaidsafeJenkins.actions;
 
 import java.util.List;
 import java.util.Map;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+
 import hudson.model.InvisibleAction;
 
 public class GithubInitializerAction extends InvisibleAction {
@@ -9,7 +12,12 @@ public class GithubInitializerAction extends InvisibleAction {
 	private String orgName;
 	private String oauthAccessToken;
 	private List<String> modules;
-	private Map<String, Map<String, Object>> pullRequests;	
+	private Map<String, PullRequest> matchingPullRequests;
+	/**
+	 * Complete Pull Request JSON persisted by the older versions, migrated to matchingPullRequests on load
+	 */
+	@Deprecated
+	private Map<String, Map<String, Object>> pullRequests;
 	private boolean testingMode;
 	private StringBuilder failureReason;
 	
@@ -42,12 +50,12 @@ public class GithubInitializerAction extends InvisibleAction {
 	public void setModules(List<String> subModules) {
 		this.modules = subModules;
 	}
-	public Map<String, Map<String, Object>> getPullRequests() {
-		return pullRequests;
+	public Map<String, PullRequest> getPullRequests() {
+		return matchingPullRequests;
 	}
 	
-	public void setPullRequests(Map<String, Map<String, Object>> pullRequests) {
-		this.pullRequests = pullRequests;
+	public void setPullRequests(Map<String, PullRequest> pullRequests) {
+		this.matchingPullRequests = pullRequests;
 	}
 	public String getFailureReason() {
 		return failureReason.toString();
@@ -56,6 +64,15 @@ public class GithubInitializerAction extends InvisibleAction {
 		this.failureReason.append(failureReason).append("\n");
 	}	
 	
+	@SuppressWarnings("deprecation")
+	protected Object readResolve() {
+		if (pullRequests != null) {
+			matchingPullRequests = PullRequest.fromMaps(pullRequests);
+			pullRequests = null;
+		}
+		return this;
+	}
+	
 	
 	
 }
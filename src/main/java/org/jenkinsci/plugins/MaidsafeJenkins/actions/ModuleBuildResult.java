@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.actions;
+
+import java.io.Serializable;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Result of the build script executed for one module
+ */
+@ExportedBean(defaultVisibility = 999)
+public final class ModuleBuildResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static enum Status {
+		SUCCESS, CACHED, FAILURE, SKIPPED
+	}
+
+	private final String module;
+	private final Status status;
+	private final int exitCode;
+	private final long duration;
+	private final String reason;
+
+	public ModuleBuildResult(String module, Status status, int exitCode, long duration, String reason) {
+		this.module = module;
+		this.status = status;
+		this.exitCode = exitCode;
+		this.duration = duration;
+		this.reason = reason;
+	}
+
+	@Exported
+	public String getModule() {
+		return module;
+	}
+
+	@Exported
+	public Status getStatus() {
+		return status;
+	}
+
+	@Exported
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	/**
+	 * Time taken in milliseconds
+	 */
+	@Exported
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Why the module was skipped or has failed without an exit code, null otherwise
+	 */
+	@Exported
+	public String getReason() {
+		return reason;
+	}
+
+	public boolean isSuccess() {
+		return status == Status.SUCCESS || status == Status.CACHED;
+	}
+
+	@Override
+	public String toString() {
+		return module + " :: " + status + (status == Status.FAILURE ? " (exit code " + exitCode + ")" : "")
+				+ (reason == null ? "" : " - " + reason);
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import java.io.PrintStream;
+
+/**
+ * Git operations used for checking out the super project and its submodules.
+ * The paths are relative to the root of the super project, "." being the super project itself.
+ * The output of every operation is written to the stream passed, so that it can be buffered per module.
+ */
+public interface GitBackend {
+
+	/**
+	 * Checks out the branch and brings it up to date with its upstream
+	 * @return true if the branch was checked out and updated
+	 */
+	boolean checkoutBranch(String path, String branch, PrintStream output) throws Exception;
+
+	/**
+	 * Creates the local branch from the start point and merges the remote branch into it.
+	 * When the head commit is already available locally, eg borrowed from a mirror of the {@link
+	 * org.jenkinsci.plugins.MaidsafeJenkins.github.GitMirrorCache}, it is merged without fetching the remote.
+	 * @param headSha commit of the remote branch to be merged, null if it is not known
+	 * @return false if the merge has failed, eg due to conflicts
+	 */
+	boolean mergeBranch(String path, String localBranch, String startPoint, String remoteUrl, String remoteBranch,
+			String headSha, PrintStream output) throws Exception;
+
+	/**
+	 * Aborts the merge of {@link #mergeBranch}, checks out the base branch and deletes the local branch
+	 */
+	boolean rollbackMerge(String path, String baseBranch, String localBranch, PrintStream output) throws Exception;
+
+	/**
+	 * Looks up the branch on the origin remote, without fetching it
+	 * @return sha of the branch on the remote, null if it could not be resolved
+	 */
+	String getRemoteHead(String path, String branch) throws Exception;
+
+	/**
+	 * Discards the local changes and removes the untracked files of the module, the ignored files (eg, the build
+	 * outputs) are kept
+	 */
+	boolean resetModule(String path, PrintStream output) throws Exception;
+
+}
@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import hudson.FilePath;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+
+/**
+ * Git backends which can be selected for a job
+ */
+public enum GitBackendType {
+	SHELL("Git command line"), JGIT("JGit (in process)");
+
+	private final String displayName;
+
+	private GitBackendType(String displayName) {
+		this.displayName = displayName;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	/**
+	 * @param superProject root of the super project on the agent
+	 * @param script used by the command line backend
+	 */
+	public GitBackend create(FilePath superProject, ShellScript script) {
+		switch (this) {
+		case JGIT:
+			return new JGitBackend(superProject);
+
+		default:
+			return new ShellGitBackend(script);
+		}
+	}
+
+	/**
+	 * @return the backend for the configured name, {@link #SHELL} if the name is not set or unknown
+	 */
+	public static GitBackendType fromName(String name) {
+		for (GitBackendType type : values()) {
+			if (type.name().equals(name)) {
+				return type;
+			}
+		}
+		return SHELL;
+	}
+
+}
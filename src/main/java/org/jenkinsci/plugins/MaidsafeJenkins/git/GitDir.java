@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Reads the refs of a repository directly from its git directory, without forking git.
+ * Supports the .git file (gitdir: ...) used by the submodules and the worktrees, and the packed-refs.
+ */
+public class GitDir {
+	private static final String GITDIR_PREFIX = "gitdir:";
+	private static final String REF_PREFIX = "ref:";
+	private static final int MAX_SYMREF_DEPTH = 5;
+	private final File gitDir;
+	private final File commonDir;
+
+	private GitDir(File gitDir, File commonDir) {
+		this.gitDir = gitDir;
+		this.commonDir = commonDir;
+	}
+
+	/**
+	 * @param workTree working directory of the repository
+	 * @return null if the directory is not a git repository
+	 */
+	public static GitDir forWorkTree(File workTree) throws IOException {
+		String line;
+		File gitDir = new File(workTree, ".git");
+		File commonDir;
+		if (gitDir.isFile()) {
+			line = readFirstLine(gitDir);
+			if (line == null || !line.startsWith(GITDIR_PREFIX)) {
+				return null;
+			}
+			gitDir = resolve(workTree, line.substring(GITDIR_PREFIX.length()).trim());
+		}
+		if (!new File(gitDir, "HEAD").isFile()) {
+			return null;
+		}
+		commonDir = gitDir;
+		line = readFirstLine(new File(gitDir, "commondir"));
+		if (line != null) {
+			commonDir = resolve(gitDir, line.trim());
+		}
+		return new GitDir(gitDir, commonDir);
+	}
+
+	public File getGitDir() {
+		return gitDir;
+	}
+
+	/**
+	 * @return the sha HEAD points to, null if HEAD is on a branch without any commit
+	 */
+	public String resolveHead() throws IOException {
+		return resolve("HEAD");
+	}
+
+	/**
+	 * @return the branch HEAD is on (eg, refs/heads/master), null if HEAD is detached
+	 */
+	public String getHeadRef() throws IOException {
+		String value = readRef("HEAD");
+		return value == null || !value.startsWith(REF_PREFIX) ? null : value.substring(REF_PREFIX.length()).trim();
+	}
+
+	/**
+	 * Resolves the ref (eg, HEAD or refs/heads/master) to a sha, following the symbolic refs
+	 * @return null if the ref does not exist
+	 */
+	public String resolve(String ref) throws IOException {
+		String value;
+		for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++) {
+			value = readRef(ref);
+			if (value == null || !value.startsWith(REF_PREFIX)) {
+				return value;
+			}
+			ref = value.substring(REF_PREFIX.length()).trim();
+		}
+		return null;
+	}
+
+	private String readRef(String ref) throws IOException {
+		// HEAD and the other pseudo refs are per worktree, the refs/ are shared through the common dir
+		File loose = new File(ref.startsWith("refs/") ? commonDir : gitDir, ref);
+		String value = readFirstLine(loose);
+		if (value != null) {
+			return value.trim();
+		}
+		return readPackedRef(ref);
+	}
+
+	private String readPackedRef(String ref) throws IOException {
+		String line;
+		int separator;
+		BufferedReader reader;
+		File packedRefs = new File(commonDir, "packed-refs");
+		if (!packedRefs.isFile()) {
+			return null;
+		}
+		reader = new BufferedReader(new InputStreamReader(new FileInputStream(packedRefs), "UTF-8"));
+		try {
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#") || line.startsWith("^")) {
+					continue; // header and peeled tags
+				}
+				separator = line.indexOf(' ');
+				if (separator > 0 && ref.equals(line.substring(separator + 1).trim())) {
+					return line.substring(0, separator);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return null;
+	}
+
+	private static File resolve(File base, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(base, path);
+	}
+
+	private static String readFirstLine(File file) throws IOException {
+		BufferedReader reader;
+		if (!file.isFile()) {
+			return null;
+		}
+		reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+}
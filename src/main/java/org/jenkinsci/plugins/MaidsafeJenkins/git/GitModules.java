@@ -0,0 +1,176 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.remoting.VirtualChannel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the submodules of the super project from its .gitmodules file on the agent.
+ * <p>
+ * The result is cached in the agent JVM per workspace, keyed by the sha of HEAD (and the timestamp of
+ * .gitmodules), thus the file is parsed again only when the super project has moved.
+ */
+public class GitModules {
+	private static final String GITMODULES = ".gitmodules";
+	private static final int MAX_CACHED_WORKSPACES = 100;
+	private static final Pattern SECTION = Pattern.compile("\\s*\\[\\s*submodule\\s+\"(.*)\"\\s*\\]\\s*");
+	private static final Pattern ENTRY = Pattern.compile("\\s*([A-Za-z0-9-]+)\\s*=\\s*(.*?)\\s*");
+
+	@SuppressWarnings("serial")
+	private static final Map<String, CachedModules> CACHE = new LinkedHashMap<String, CachedModules>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedModules> eldest) {
+			return size() > MAX_CACHED_WORKSPACES;
+		}
+	};
+
+	private GitModules() {
+	}
+
+	/**
+	 * @param superProject root of the super project
+	 * @return submodule paths keyed by the module name, see {@link #getModuleName(String)}
+	 */
+	public static Map<String, String> read(FilePath superProject) throws IOException, InterruptedException {
+		return superProject.act(new ReadModules());
+	}
+
+	/**
+	 * Name of the module used for the Github repository, ie the last segment of the URL, lower cased and
+	 * without the .git suffix
+	 */
+	public static String getModuleName(String url) {
+		String name = url.trim();
+		while (name.endsWith("/")) {
+			name = name.substring(0, name.length() - 1);
+		}
+		name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(':')) + 1);
+		if (name.endsWith(".git")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return name.toLowerCase();
+	}
+
+	/**
+	 * Parses the .gitmodules file
+	 * @return submodule paths keyed by the module name
+	 */
+	static Map<String, String> parse(File file) throws IOException {
+		String line;
+		Matcher matcher;
+		String name = null;
+		Map<String, String> paths = new LinkedHashMap<String, String>();
+		Map<String, String> urls = new HashMap<String, String>();
+		Map<String, String> modulePathMapping = new HashMap<String, String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			while ((line = reader.readLine()) != null) {
+				line = stripComment(line);
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				matcher = SECTION.matcher(line);
+				if (matcher.matches()) {
+					name = matcher.group(1);
+					paths.put(name, name); // the path defaults to the name of the submodule
+					continue;
+				}
+				if (line.trim().startsWith("[")) {
+					name = null; // any other section
+					continue;
+				}
+				matcher = ENTRY.matcher(line);
+				if (name == null || !matcher.matches()) {
+					continue;
+				}
+				if ("path".equalsIgnoreCase(matcher.group(1))) {
+					paths.put(name, unquote(matcher.group(2)));
+				} else if ("url".equalsIgnoreCase(matcher.group(1))) {
+					urls.put(name, unquote(matcher.group(2)));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		for (Map.Entry<String, String> submodule : paths.entrySet()) {
+			if (urls.containsKey(submodule.getKey())) {
+				modulePathMapping.put(getModuleName(urls.get(submodule.getKey())), submodule.getValue());
+			}
+		}
+		return modulePathMapping;
+	}
+
+	private static String stripComment(String line) {
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == '"') {
+				quoted = !quoted;
+			} else if (!quoted && (line.charAt(i) == '#' || line.charAt(i) == ';')) {
+				return line.substring(0, i);
+			}
+		}
+		return line;
+	}
+
+	private static String unquote(String value) {
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	private static class CachedModules {
+		private final String head;
+		private final long lastModified;
+		private final Map<String, String> modules;
+
+		CachedModules(String head, long lastModified, Map<String, String> modules) {
+			this.head = head;
+			this.lastModified = lastModified;
+			this.modules = modules;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class ReadModules implements FileCallable<Map<String, String>> {
+
+		public Map<String, String> invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			CachedModules cached;
+			Map<String, String> modules;
+			String key = dir.getCanonicalPath();
+			File gitModules = new File(dir, GITMODULES);
+			GitDir gitDir = GitDir.forWorkTree(dir);
+			String head = gitDir == null ? null : gitDir.resolveHead();
+			if (!gitModules.isFile()) {
+				return new HashMap<String, String>();
+			}
+			synchronized (CACHE) {
+				cached = CACHE.get(key);
+			}
+			if (cached != null && head != null && head.equals(cached.head)
+					&& cached.lastModified == gitModules.lastModified()) {
+				return new HashMap<String, String>(cached.modules);
+			}
+			modules = Collections.unmodifiableMap(parse(gitModules));
+			if (head != null) {
+				synchronized (CACHE) {
+					CACHE.put(key, new CachedModules(head, gitModules.lastModified(), modules));
+				}
+			}
+			return new HashMap<String, String>(modules);
+		}
+	}
+
+}
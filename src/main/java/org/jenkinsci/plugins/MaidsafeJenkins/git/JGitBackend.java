@@ -0,0 +1,244 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+
+import org.eclipse.jgit.api.CreateBranchCommand.SetupUpstreamMode;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.RefSpec;
+
+/**
+ * {@link GitBackend} running JGit in the agent JVM through {@link FilePath#act(FileCallable)}.
+ * Every operation is a single remoting call, no process is forked and no command output is parsed.
+ * The remote repositories are accessed with the SSH configuration (~/.ssh) of the user running the agent.
+ */
+public class JGitBackend implements GitBackend {
+	private static final String PULL_REF_PREFIX = "refs/maidsafe/pull/";
+	private final FilePath superProject;
+
+	public JGitBackend(FilePath superProject) {
+		this.superProject = superProject;
+	}
+
+	public boolean checkoutBranch(String path, String branch, PrintStream output) throws Exception {
+		return superProject.child(path).act(new CheckoutBranch(branch)).report(output);
+	}
+
+	public boolean mergeBranch(String path, String localBranch, String startPoint, String remoteUrl,
+			String remoteBranch, String headSha, PrintStream output) throws Exception {
+		return superProject.child(path).act(new MergeBranch(localBranch, startPoint, remoteUrl, remoteBranch, headSha))
+				.report(output);
+	}
+
+	public boolean rollbackMerge(String path, String baseBranch, String localBranch, PrintStream output)
+			throws Exception {
+		return superProject.child(path).act(new RollbackMerge(baseBranch, localBranch)).report(output);
+	}
+
+	public String getRemoteHead(String path, String branch) throws Exception {
+		return superProject.child(path).act(new RemoteHead(branch));
+	}
+
+	public boolean resetModule(String path, PrintStream output) throws Exception {
+		return superProject.child(path).act(new ResetModule()).report(output);
+	}
+
+	/**
+	 * Outcome of an operation executed on the agent along with the messages to be logged
+	 */
+	@SuppressWarnings("serial")
+	static class GitResult implements Serializable {
+		private final StringBuilder messages = new StringBuilder();
+		private boolean success = true;
+
+		GitResult log(String message) {
+			messages.append(message).append("\n");
+			return this;
+		}
+
+		GitResult fail(String message) {
+			success = false;
+			return log(message);
+		}
+
+		boolean report(PrintStream output) {
+			output.print(messages);
+			return success;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class CheckoutBranch implements FileCallable<GitResult> {
+		private final String branch;
+
+		CheckoutBranch(String branch) {
+			this.branch = branch;
+		}
+
+		public GitResult invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			PullResult pullResult;
+			GitResult result = new GitResult();
+			Git git = Git.open(dir);
+			try {
+				if (git.getRepository().getRef(Constants.R_HEADS + branch) == null) {
+					git.checkout().setCreateBranch(true).setName(branch).setStartPoint(Constants.DEFAULT_REMOTE_NAME + "/" + branch)
+							.setUpstreamMode(SetupUpstreamMode.TRACK).call();
+				} else {
+					git.checkout().setName(branch).call();
+				}
+				result.log("Checked out " + branch + " in " + dir);
+				pullResult = git.pull().call();
+				if (!pullResult.isSuccessful()) {
+					return result.fail("Pull of " + branch + " failed :: " + pullResult);
+				}
+				return result.log("Pulled " + branch + " :: " + pullResult.getMergeResult().getMergeStatus());
+			} catch (GitAPIException ex) {
+				return result.fail("Checkout of " + branch + " failed in " + dir + " :: " + ex.getMessage());
+			} finally {
+				git.getRepository().close();
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class MergeBranch implements FileCallable<GitResult> {
+		private final String localBranch;
+		private final String startPoint;
+		private final String remoteUrl;
+		private final String remoteBranch;
+		private final String headSha;
+
+		MergeBranch(String localBranch, String startPoint, String remoteUrl, String remoteBranch, String headSha) {
+			this.localBranch = localBranch;
+			this.startPoint = startPoint;
+			this.remoteUrl = remoteUrl;
+			this.remoteBranch = remoteBranch;
+			this.headSha = headSha;
+		}
+
+		public GitResult invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			Ref fetched;
+			ObjectId head;
+			MergeResult mergeResult;
+			GitResult result = new GitResult();
+			String trackingRef = PULL_REF_PREFIX + remoteBranch;
+			Git git = Git.open(dir);
+			try {
+				git.checkout().setCreateBranch(true).setName(localBranch).setStartPoint(startPoint).call();
+				head = headSha != null && ObjectId.isId(headSha) ? ObjectId.fromString(headSha) : null;
+				if (head != null && git.getRepository().hasObject(head)) {
+					// available locally, eg from the alternates of a mirror
+					mergeResult = git.merge().include(head).call();
+				} else {
+					git.fetch().setRemote(remoteUrl)
+							.setRefSpecs(new RefSpec("+" + Constants.R_HEADS + remoteBranch + ":" + trackingRef)).call();
+					fetched = git.getRepository().getRef(trackingRef);
+					if (fetched == null) {
+						return result.fail("Branch " + remoteBranch + " was not found in " + remoteUrl);
+					}
+					mergeResult = git.merge().include(fetched).call();
+				}
+				result.log("Merge of " + remoteUrl + " " + remoteBranch + " into " + localBranch + " :: "
+						+ mergeResult.getMergeStatus());
+				if (!mergeResult.getMergeStatus().isSuccessful()) {
+					if (mergeResult.getConflicts() != null) {
+						for (String path : mergeResult.getConflicts().keySet()) {
+							result.log("CONFLICT :: " + path);
+						}
+					}
+					return result.fail("Merge failed in " + dir);
+				}
+				return result;
+			} catch (GitAPIException ex) {
+				return result.fail("Merge of " + remoteBranch + " failed in " + dir + " :: " + ex.getMessage());
+			} finally {
+				git.getRepository().close();
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class RollbackMerge implements FileCallable<GitResult> {
+		private final String baseBranch;
+		private final String localBranch;
+
+		RollbackMerge(String baseBranch, String localBranch) {
+			this.baseBranch = baseBranch;
+			this.localBranch = localBranch;
+		}
+
+		public GitResult invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			GitResult result = new GitResult();
+			Git git = Git.open(dir);
+			try {
+				git.reset().setMode(ResetType.HARD).call();
+				git.checkout().setName(baseBranch).setForce(true).call();
+				if (git.getRepository().getRef(Constants.R_HEADS + localBranch) != null) {
+					git.branchDelete().setBranchNames(localBranch).setForce(true).call();
+				}
+				return result.log("Rolled back " + localBranch + " to " + baseBranch + " in " + dir);
+			} catch (GitAPIException ex) {
+				return result.fail("Rollback failed in " + dir + " :: " + ex.getMessage());
+			} finally {
+				git.getRepository().close();
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class RemoteHead implements FileCallable<String> {
+		private final String branch;
+
+		RemoteHead(String branch) {
+			this.branch = branch;
+		}
+
+		public String invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			Git git = Git.open(dir);
+			try {
+				for (Ref ref : git.lsRemote().setRemote(Constants.DEFAULT_REMOTE_NAME).setHeads(true).call()) {
+					if (ref.getName().equals(Constants.R_HEADS + branch) && ref.getObjectId() != null) {
+						return ref.getObjectId().name();
+					}
+				}
+				return null;
+			} catch (GitAPIException ex) {
+				return null;
+			} finally {
+				git.getRepository().close();
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class ResetModule implements FileCallable<GitResult> {
+
+		public GitResult invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			GitResult result = new GitResult();
+			Git git = Git.open(dir);
+			try {
+				git.reset().setMode(ResetType.HARD).call();
+				git.clean().setCleanDirectories(true).call();
+				return result.log("Reset done in " + dir);
+			} catch (GitAPIException ex) {
+				return result.fail("Reset failed in " + dir + " :: " + ex.getMessage());
+			} finally {
+				git.getRepository().close();
+			}
+		}
+	}
+
+}
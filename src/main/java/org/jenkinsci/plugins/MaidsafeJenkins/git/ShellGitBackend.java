@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+
+/**
+ * {@link GitBackend} running the git command line through {@link ShellScript}
+ */
+public class ShellGitBackend implements GitBackend {
+	private final String UPDATE_CMD = "git checkout %s && git pull";
+	private final String RESET_CMD = "git reset --hard HEAD && git clean -fdq";
+	private final String LS_REMOTE_CMD = "git ls-remote origin refs/heads/%s";
+	private final int LS_REMOTE_OUTPUT_LIMIT = 4096;
+	private final ShellScript script;
+
+	public ShellGitBackend(ShellScript script) {
+		this.script = script;
+	}
+
+	public boolean checkoutBranch(String path, String branch, PrintStream output) throws Exception {
+		return execute(path, output, String.format(UPDATE_CMD, branch));
+	}
+
+	public boolean mergeBranch(String path, String localBranch, String startPoint, String remoteUrl,
+			String remoteBranch, String headSha, PrintStream output) throws Exception {
+		return execute(path, output, "git checkout -b " + localBranch + " " + startPoint,
+				getPullCommand(remoteUrl, remoteBranch, headSha));
+	}
+
+	/**
+	 * Merges the head commit when it is available locally, otherwise pulls the remote branch
+	 */
+	protected String getPullCommand(String remoteUrl, String remoteBranch, String headSha) {
+		String pull = "git pull " + remoteUrl + " " + remoteBranch;
+		if (headSha == null || !headSha.matches("[0-9a-fA-F]{40}")) {
+			return pull;
+		}
+		return "if git cat-file -e " + headSha + "^{commit} 2>/dev/null; then git merge --no-edit " + headSha
+				+ "; else " + pull + "; fi";
+	}
+
+	public boolean rollbackMerge(String path, String baseBranch, String localBranch, PrintStream output)
+			throws Exception {
+		return execute(path, output, "git merge --abort || git reset --hard HEAD", "git checkout -f " + baseBranch,
+				"git branch -D " + localBranch + " || :");
+	}
+
+	public String getRemoteHead(String path, String branch) throws Exception {
+		List<String> cmds = new ArrayList<String>();
+		String output;
+		cmds.add("cd " + path);
+		cmds.add(String.format(LS_REMOTE_CMD, branch));
+		output = script.capture(cmds, LS_REMOTE_OUTPUT_LIMIT);
+		if (output == null || output.trim().isEmpty()) {
+			return null;
+		}
+		return output.trim().split("\\s+")[0];
+	}
+
+	public boolean resetModule(String path, PrintStream output) throws Exception {
+		return execute(path, output, RESET_CMD);
+	}
+
+	protected boolean execute(String path, PrintStream output, String... commands) throws Exception {
+		List<String> cmds = new ArrayList<String>();
+		cmds.add("cd " + path);
+		for (String command : commands) {
+			cmds.add(command);
+		}
+		return script.execute(cmds, output) == 0;
+	}
+
+}
@@ -0,0 +1,111 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Last known state of the modules of a workspace, kept between the builds of the workspace.
+ * <p>
+ * Records the sha each module was left on after it was checked out to the base branch, and the modules touched
+ * since (eg, merged with a Pull Request). A module which was not touched, is still on the base branch at the
+ * recorded sha and whose base branch has not moved on the remote does not need to be checked out and pulled
+ * again. A touched module is reset before it is checked out, the other modules are left as they are.
+ * The state is held in memory only, after a restart every module is checked out once.
+ */
+public class WorkspaceState {
+	private static final Map<String, WorkspaceState> STATES = new HashMap<String, WorkspaceState>();
+	private final Map<String, String> baseShas = new HashMap<String, String>();
+	private final Set<String> touched = new HashSet<String>();
+
+	/**
+	 * @param workspaceKey identifies the workspace on its node, null for a state which is not kept
+	 */
+	public static WorkspaceState forWorkspace(String workspaceKey) {
+		WorkspaceState state;
+		if (workspaceKey == null) {
+			return new WorkspaceState();
+		}
+		synchronized (STATES) {
+			state = STATES.get(workspaceKey);
+			if (state == null) {
+				state = new WorkspaceState();
+				STATES.put(workspaceKey, state);
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * @param moduleDir working directory of the module
+	 * @param branch null if the module is checked out detached, ie in a worktree
+	 * @return sha of HEAD if the module is on the branch, null otherwise
+	 */
+	public static String getHeadOnBranch(FilePath moduleDir, String branch) throws IOException, InterruptedException {
+		return moduleDir.act(new HeadOnBranch(branch));
+	}
+
+	/**
+	 * @return true if the module can be reused as it is for the remote sha of the base branch
+	 */
+	public synchronized boolean isUpToDate(String path, String remoteSha, String headSha) {
+		return remoteSha != null && !touched.contains(path) && remoteSha.equals(headSha)
+				&& remoteSha.equals(baseShas.get(path));
+	}
+
+	/**
+	 * @return true if the workspace has been checked out before, ie the submodules are initialised
+	 */
+	public synchronized boolean isWarm() {
+		return !baseShas.isEmpty();
+	}
+
+	public synchronized boolean isTouched(String path) {
+		return touched.contains(path);
+	}
+
+	/**
+	 * Records the module as checked out to the base branch at the sha, null if the sha is unknown
+	 */
+	public synchronized void setBaseSha(String path, String sha) {
+		touched.remove(path);
+		if (sha == null) {
+			baseShas.remove(path);
+		} else {
+			baseShas.put(path, sha);
+		}
+	}
+
+	/**
+	 * Records the module as changed by the build, it is reset and checked out by the next build
+	 */
+	public synchronized void markTouched(String path) {
+		touched.add(path);
+		baseShas.remove(path);
+	}
+
+	@SuppressWarnings("serial")
+	private static class HeadOnBranch implements FileCallable<String> {
+		private final String branch;
+
+		HeadOnBranch(String branch) {
+			this.branch = branch;
+		}
+
+		public String invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			GitDir gitDir = GitDir.forWorkTree(dir);
+			if (gitDir == null || (branch != null && !("refs/heads/" + branch).equals(gitDir.getHeadRef()))) {
+				return null;
+			}
+			return gitDir.resolveHead();
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import java.io.PrintStream;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+
+/**
+ * {@link ShellGitBackend} for the modules checked out as worktrees of shared clones.
+ * The local branches are shared by all the worktrees of a clone and a branch can not be checked out in two of
+ * them, thus the base branches are checked out detached from the remote, and the local branches of the merges
+ * have to be unique to the build.
+ */
+public class WorktreeGitBackend extends ShellGitBackend {
+	private final String FETCH_CMD = "git fetch --quiet origin refs/heads/%s";
+
+	public WorktreeGitBackend(ShellScript script) {
+		super(script);
+	}
+
+	@Override
+	public boolean checkoutBranch(String path, String branch, PrintStream output) throws Exception {
+		return execute(path, output, String.format(FETCH_CMD, branch), "git checkout --detach FETCH_HEAD");
+	}
+
+	@Override
+	public boolean mergeBranch(String path, String localBranch, String startPoint, String remoteUrl,
+			String remoteBranch, String headSha, PrintStream output) throws Exception {
+		return execute(path, output, String.format(FETCH_CMD, startPoint),
+				"git checkout -B " + localBranch + " FETCH_HEAD", getPullCommand(remoteUrl, remoteBranch, headSha));
+	}
+
+	@Override
+	public boolean rollbackMerge(String path, String baseBranch, String localBranch, PrintStream output)
+			throws Exception {
+		return execute(path, output, "git merge --abort || git reset --hard HEAD", "git checkout -f --detach",
+				"git branch -D " + localBranch + " || :");
+	}
+
+}
@@ -0,0 +1,176 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.util.DaemonThreadFactory;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.util.RingBufferOutputStream;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+
+/**
+ * Deletes the temporary branches created for merging the Pull Requests once the build has completed.
+ * <p>
+ * The branches are deleted only in the modules they were created in, all the branches of a module with a single
+ * git command, and all the modules in one script. The cleanup runs in the background so that the completion of
+ * the build is not delayed; the next build of the same workspace waits for it, see {@link #awaitPending(String)}.
+ * The cleanup is reserved by the build before it releases the workspace, see {@link #reserve(String)}, as the next
+ * build can start before the cleanup is scheduled on completion.
+ * The build log is closed by then, the output of a failed cleanup is written to the Jenkins log.
+ */
+public class BranchCleanup {
+	private static final int OUTPUT_LIMIT = 64 * 1024;
+	private static final Logger LOGGER = Logger.getLogger(BranchCleanup.class.getName());
+
+	private static BranchCleanup instance;
+
+	private final ExecutorService executor;
+	private final Map<String, Future<?>> pending = new HashMap<String, Future<?>>();
+
+	private BranchCleanup() {
+		executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+	}
+
+	public static synchronized BranchCleanup get() {
+		if (instance == null) {
+			instance = new BranchCleanup();
+		}
+		return instance;
+	}
+
+	/**
+	 * @return key identifying the workspace of the build on its node, null if the build has no workspace
+	 */
+	public static String getWorkspaceKey(AbstractBuild<?, ?> build) {
+		FilePath workspace = build.getWorkspace();
+		return workspace == null ? null : build.getBuiltOnStr() + ":" + workspace.getRemote();
+	}
+
+	/**
+	 * Commands deleting the branches, grouped by module. A module failing the cleanup does not stop the others.
+	 * @param baseBranch checked out in place of the branches, null to detach HEAD (worktrees)
+	 * @param branchUsedByModule temporary branch keyed by the module it was created in
+	 * @param modulePaths paths of the modules keyed by the module name
+	 */
+	public static List<String> getCommands(String baseBranch, Map<String, String> branchUsedByModule,
+			Map<String, String> modulePaths) {
+		String path;
+		StringBuilder branches;
+		List<String> commands = new ArrayList<String>();
+		Map<String, Set<String>> branchesByPath = new LinkedHashMap<String, Set<String>>();
+		for (Map.Entry<String, String> entry : branchUsedByModule.entrySet()) {
+			path = modulePaths != null && modulePaths.containsKey(entry.getKey()) ? modulePaths.get(entry.getKey())
+					: entry.getKey();
+			if (!branchesByPath.containsKey(path)) {
+				branchesByPath.put(path, new LinkedHashSet<String>());
+			}
+			branchesByPath.get(path).add(entry.getValue());
+		}
+		for (Map.Entry<String, Set<String>> entry : branchesByPath.entrySet()) {
+			branches = new StringBuilder();
+			for (String branch : entry.getValue()) {
+				branches.append(" ").append(branch);
+			}
+			commands.add("( cd " + entry.getKey() + " && git checkout " + (baseBranch == null ? "--detach" : baseBranch)
+					+ " && git branch -D" + branches
+					+ " ) || echo 'Temporary branches could not be deleted in " + entry.getKey() + "'");
+		}
+		return commands;
+	}
+
+	/**
+	 * Marks the cleanup of the workspace as pending until it is scheduled, so that the next build of the workspace
+	 * waits for it from then on. Must be followed by {@link #schedule(String, ShellScript, List)}.
+	 */
+	public synchronized void reserve(String workspaceKey) {
+		if (workspaceKey != null) {
+			pending.put(workspaceKey, new FutureTask<Object>(new Runnable() {
+				public void run() {
+					// completed once the cleanup is scheduled
+				}
+			}, null));
+		}
+	}
+
+	/**
+	 * Runs the commands in the background with the script of the build, then ends the script
+	 * @param workspaceKey see {@link #getWorkspaceKey(AbstractBuild)}
+	 * @param commands see {@link #getCommands(String, Map, Map)}, may be empty
+	 */
+	public synchronized void schedule(String workspaceKey, final ShellScript script, final List<String> commands) {
+		Future<?> future;
+		Future<?> reserved = workspaceKey == null ? null : pending.get(workspaceKey);
+		Iterator<Future<?>> iterator = pending.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isDone()) {
+				iterator.remove();
+			}
+		}
+		future = executor.submit(new Runnable() {
+			public void run() {
+				RingBufferOutputStream output = new RingBufferOutputStream(OUTPUT_LIMIT);
+				try {
+					if (!commands.isEmpty() && script.execute(commands, output) != 0) {
+						LOGGER.warning("Cleanup of the temporary branches failed :: "
+								+ output.toString(Charset.defaultCharset()));
+					}
+				} catch (Exception ex) {
+					LOGGER.log(Level.WARNING, "Cleanup of the temporary branches failed", ex);
+				} finally {
+					script.close();
+				}
+			}
+		});
+		if (workspaceKey != null) {
+			pending.put(workspaceKey, future);
+		}
+		if (reserved instanceof FutureTask) {
+			((FutureTask<?>) reserved).run(); // wakes up the waiting builds, which then wait for the cleanup
+		}
+	}
+
+	/**
+	 * Waits until the cleanup of the previous build of the workspace has completed, so that the branches are not
+	 * deleted while the workspace is checked out again
+	 */
+	public void awaitPending(String workspaceKey) throws InterruptedException {
+		Future<?> future;
+		while (workspaceKey != null) {
+			synchronized (this) {
+				future = pending.get(workspaceKey);
+			}
+			if (future == null) {
+				return;
+			}
+			try {
+				future.get();
+			} catch (ExecutionException ex) {
+				LOGGER.log(Level.WARNING, "Cleanup of the temporary branches failed", ex.getCause());
+			}
+			synchronized (this) {
+				// a reservation is replaced by the cleanup scheduled, which is waited for in turn
+				if (pending.get(workspaceKey) == future) {
+					pending.remove(workspaceKey);
+					return;
+				}
+			}
+		}
+	}
+
+}
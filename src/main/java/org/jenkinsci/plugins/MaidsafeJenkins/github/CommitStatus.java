@@ -4,17 +4,6 @@ import java.io.PrintStream;
 import java.util.Iterator;
 import java.util.Map;
 
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpMethod;
-import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-
-import com.google.common.collect.DiscreteDomain;
-
 import jenkins.model.JenkinsLocationConfiguration;
 
 
@@ -35,6 +24,7 @@ public class CommitStatus {
 	private final String PENDING_STATE_STRING = "pending";
 	
 	private boolean testingMode;
+	private CommitStatusPublisher.Callback callback;
 	
 	
 	public enum State {
@@ -48,6 +38,15 @@ public class CommitStatus {
 		this.accessToken = accessToken;
 	}
 	
+	/**
+	 * @param callback receives the delivery results of the statuses posted by {@link CommitStatusPublisher}
+	 */
+	public CommitStatus(String orgName, PrintStream logger, boolean testingMode, String accessToken,
+			CommitStatusPublisher.Callback callback) {
+		this(orgName, logger, testingMode, accessToken);
+		this.callback = callback;
+	}
+	
 	
 	private String getDefaultDescription(State state) {
 		String description;
@@ -95,23 +94,19 @@ public class CommitStatus {
 		return payload;
 	}
 	
-	public void updateAll(Map<String, Map<String, Object>> pullRequests, State state, String buildRefUrl) {			
+	public void updateAll(Map<String, PullRequest> pullRequests, State state, String buildRefUrl) {			
 		updateAll(pullRequests, state, buildRefUrl , getDefaultDescription(state));
 	}
 	
-	public void updateAll(Map<String, Map<String, Object>> pullRequests, State state, String buildRefUrl, String description) {
+	public void updateAll(Map<String, PullRequest> pullRequests, State state, String buildRefUrl, String description) {
 		if (pullRequests == null) {
 			return;
 		}
-		Map<String, Object> pr;
 		String module;
-		String sha;
 		Iterator<String> modules = pullRequests.keySet().iterator();		
 		while (modules.hasNext()) {			
 			module = modules.next();
-			pr = pullRequests.get(module);
-			sha = (String) ((Map<String, Object>) pr.get("head")).get("sha");
-			update(module, sha, state, buildRefUrl, description);
+			update(module, pullRequests.get(module).getHeadSha(), state, buildRefUrl, description);
 		}
 		
 	}
@@ -120,33 +115,18 @@ public class CommitStatus {
 		update(repo, sha, status, buildRefUrl, description, context);
 	}
 	
+	/**
+	 * Queues the status in the {@link CommitStatusPublisher}, the status is posted to Github asynchronously
+	 */
 	public void update(String repo, String sha, State status, String buildRefUrl, String description , String context) {
-		DefaultHttpClient client;
-		HttpPost postMethod;		
-		int responseStatusCode;
 		CommitStatusPayload payload = getPayload(status, buildRefUrl, description, context);		
 		if (testingMode) {
 			logger.println("URL :: " +  String.format(END_POINT, orgName, repo, sha));
 			logger.println("Post Data :: " +  payload);
 			return;
 		}
-		try {
-			client = new DefaultHttpClient();
-			postMethod = new HttpPost(String.format(END_POINT, orgName, repo, sha));
-			postMethod.setHeader("Content-Type", "application/json");			
-			if (accessToken != null && !accessToken.isEmpty()) {
-				postMethod.setHeader("Authorization", "token " +  accessToken);
-			}
-			postMethod.setEntity(new StringEntity(payload.toString(), "application/json", "UTF-8"));
-			responseStatusCode = client.execute(postMethod).getStatusLine().getStatusCode();
-			if (responseStatusCode != 201){ // 201 status is returned for successful status creation 
-				logger.println("Commit status API update failed with STATUS CODE :: " + responseStatusCode);
-			}
-		} catch(Exception ex) {
-			logger.println("Commit status API update failed  :: " + ex.getMessage());
-			ex.printStackTrace();
-		}
-			
+		CommitStatusPublisher.get().publish(new CommitStatusPublisher.Delivery(repo, sha, context, status,
+				String.format(END_POINT, orgName, repo, sha), payload.toString(), accessToken, callback));
 	}
 	
 }
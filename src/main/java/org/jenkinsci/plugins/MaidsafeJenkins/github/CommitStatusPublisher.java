@@ -0,0 +1,314 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatus.State;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.RateLimitScheduler.Priority;
+
+/**
+ * Posts the commit statuses to Github asynchronously, so that the build does not wait for the Github API.
+ * <p>
+ * The statuses are delivered by a bounded pool of workers. The statuses are keyed by the commit and the context,
+ * only one status of a key is posted at a time, and a newer status for the same key replaces the one waiting (eg,
+ * a waiting PENDING is dropped once the SUCCESS/FAILURE of the build arrives). Server errors and abuse rate limit
+ * responses are retried with exponential backoff, unless a newer status of the key has arrived meanwhile, so
+ * that the last status posted is always the latest one. The result of every delivery is reported to the
+ * {@link Callback} of the status.
+ */
+public class CommitStatusPublisher {
+	public static final int DEFAULT_WORKERS = 4;
+	private static final int MAX_ATTEMPTS = 5;
+	private static final long INITIAL_BACKOFF_MILLIS = 2000;
+	private static final long MAX_BACKOFF_MILLIS = 60000;
+	private static final Logger LOGGER = Logger.getLogger(CommitStatusPublisher.class.getName());
+
+	private static CommitStatusPublisher instance;
+
+	private final ScheduledThreadPoolExecutor executor;
+	private final Map<String, KeyState> states = new HashMap<String, KeyState>();
+
+	/**
+	 * Receives the result of the delivery of a commit status
+	 */
+	public static interface Callback {
+		void onDelivered(Delivery delivery, int statusCode);
+
+		void onFailed(Delivery delivery, int statusCode, String reason);
+
+		void onSuperseded(Delivery delivery);
+	}
+
+	CommitStatusPublisher() {
+		executor = new ScheduledThreadPoolExecutor(DEFAULT_WORKERS, new DaemonThreadFactory());
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	public static synchronized CommitStatusPublisher get() {
+		if (instance == null) {
+			instance = new CommitStatusPublisher();
+		}
+		return instance;
+	}
+
+	/**
+	 * Sets the number of statuses posted in parallel
+	 */
+	public void setWorkers(int workers) {
+		executor.setCorePoolSize(workers > 0 ? workers : DEFAULT_WORKERS);
+	}
+
+	/**
+	 * Queues the status for delivery and returns immediately
+	 */
+	public void publish(Delivery delivery) {
+		Delivery previous;
+		KeyState state;
+		synchronized (states) {
+			state = states.get(delivery.getKey());
+			if (state == null) {
+				state = new KeyState();
+				states.put(delivery.getKey(), state);
+			}
+			delivery.sequence = ++state.lastSequence;
+			previous = state.pending;
+			state.pending = delivery;
+		}
+		if (previous != null) {
+			previous.superseded();
+		}
+		schedule(delivery.getKey(), 0);
+	}
+
+	private void schedule(final String key, long delay) {
+		executor.schedule(new Runnable() {
+			public void run() {
+				deliverPending(key);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Posts the latest status of the key, unless a status of the key is being posted already. The worker posting
+	 * it delivers the latest status next, so the statuses of a key reach Github in their order.
+	 */
+	private void deliverPending(String key) {
+		Delivery delivery;
+		Delivery superseded = null;
+		PostResult result;
+		KeyState state;
+		boolean retry = false;
+		boolean next;
+		synchronized (states) {
+			state = states.get(key);
+			if (state == null || state.inFlight || state.pending == null) {
+				return;
+			}
+			delivery = state.pending;
+			state.pending = null;
+			state.inFlight = true;
+		}
+		delivery.attempts++;
+		try {
+			result = post(delivery);
+		} catch (Exception ex) { // any failure must end the post of the key
+			result = new PostResult(-1, 0, ex.getMessage(), true);
+		}
+		if (result.statusCode == HttpStatus.SC_CREATED) {
+			delivery.delivered(result.statusCode);
+		} else if (!result.retryable || delivery.attempts >= MAX_ATTEMPTS) {
+			delivery.failed(result.statusCode, result.message);
+		} else {
+			retry = true;
+		}
+		synchronized (states) {
+			state.inFlight = false;
+			if (retry && state.pending == null && delivery.sequence == state.lastSequence) {
+				// no newer status, the failed one is posted again after the backoff
+				state.pending = delivery;
+			} else if (retry) {
+				superseded = delivery;
+				retry = false;
+			}
+			next = !retry && state.pending != null;
+			if (state.pending == null) {
+				states.remove(key);
+			}
+		}
+		if (superseded != null) {
+			superseded.superseded();
+		}
+		if (retry) {
+			LOGGER.log(Level.INFO, "Commit status for {0} failed with {1}, retrying",
+					new Object[] {delivery.getKey(), result.statusCode});
+			schedule(key, getBackoff(delivery.attempts, result.retryAfter));
+		} else if (next) {
+			schedule(key, 0); // the status which arrived during the post
+		}
+	}
+
+	private long getBackoff(int attempts, long retryAfterSeconds) {
+		if (retryAfterSeconds > 0) {
+			return retryAfterSeconds * 1000;
+		}
+		return Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << (attempts - 1));
+	}
+
+	PostResult post(Delivery delivery) throws IOException {
+		HttpPost postMethod = new HttpPost(delivery.url);
+		postMethod.setHeader("Content-Type", "application/json");
+		postMethod.setEntity(new StringEntity(delivery.payload, "application/json", "UTF-8"));
+		return GitHubTransport.get().execute(postMethod, delivery.accessToken, Priority.STATUS, new ResponseHandler<PostResult>() {
+
+			public PostResult handleResponse(HttpResponse response) throws IOException {
+				String body;
+				long retryAfter = 0;
+				int statusCode = response.getStatusLine().getStatusCode();
+				Header retryAfterHeader = response.getFirstHeader("Retry-After");
+				if (statusCode == HttpStatus.SC_CREATED) {
+					EntityUtils.consume(response.getEntity());
+					return new PostResult(statusCode, 0, null, false);
+				}
+				body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8");
+				if (retryAfterHeader != null) {
+					try {
+						retryAfter = Long.parseLong(retryAfterHeader.getValue().trim());
+					} catch (NumberFormatException ignored) {
+						retryAfter = 0;
+					}
+				}
+				return new PostResult(statusCode, retryAfter, body, isRetryable(statusCode, retryAfterHeader != null, body));
+			}
+		});
+	}
+
+	/**
+	 * Server errors and the abuse (secondary) rate limit are temporary, other client errors are not retried
+	 */
+	private boolean isRetryable(int statusCode, boolean hasRetryAfter, String body) {
+		if (statusCode >= 500 || statusCode == 429) {
+			return true;
+		}
+		return statusCode == HttpStatus.SC_FORBIDDEN && (hasRetryAfter || body.contains("abuse")
+				|| body.contains("secondary rate limit"));
+	}
+
+	/**
+	 * Stops the workers when Jenkins is shutting down. Statuses waiting for a retry are dropped.
+	 */
+	@Terminator
+	public static synchronized void shutdown() throws InterruptedException {
+		if (instance != null) {
+			instance.executor.shutdown();
+			instance.executor.awaitTermination(10, TimeUnit.SECONDS);
+			instance = null;
+		}
+	}
+
+	/**
+	 * Status waiting to be posted for a key, and whether a status of the key is being posted
+	 */
+	private static class KeyState {
+		private Delivery pending;
+		private boolean inFlight;
+		private long lastSequence;
+	}
+
+	static class PostResult {
+		private final int statusCode;
+		private final long retryAfter;
+		private final String message;
+		private final boolean retryable;
+
+		PostResult(int statusCode, long retryAfter, String message, boolean retryable) {
+			this.statusCode = statusCode;
+			this.retryAfter = retryAfter;
+			this.message = message;
+			this.retryable = retryable;
+		}
+	}
+
+	/**
+	 * A commit status to be posted to Github
+	 */
+	public static class Delivery {
+		private final String repo;
+		private final String sha;
+		private final String context;
+		private final State state;
+		private final String url;
+		private final String payload;
+		private final String accessToken;
+		private final Callback callback;
+		private volatile int attempts;
+		private long sequence; // order of the status among the ones of its key
+
+		public Delivery(String repo, String sha, String context, State state, String url, String payload,
+				String accessToken, Callback callback) {
+			this.repo = repo;
+			this.sha = sha;
+			this.context = context;
+			this.state = state;
+			this.url = url;
+			this.payload = payload;
+			this.accessToken = accessToken;
+			this.callback = callback;
+		}
+
+		public String getKey() {
+			return url + "#" + context;
+		}
+
+		public String getRepo() {
+			return repo;
+		}
+
+		public String getSha() {
+			return sha;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		public int getAttempts() {
+			return attempts;
+		}
+
+		private void delivered(int statusCode) {
+			if (callback != null) {
+				callback.onDelivered(this, statusCode);
+			}
+		}
+
+		private void failed(int statusCode, String reason) {
+			LOGGER.log(Level.WARNING, "Commit status API update failed for {0} with STATUS CODE :: {1} {2}",
+					new Object[] {getKey(), statusCode, reason});
+			if (callback != null) {
+				callback.onFailed(this, statusCode, reason);
+			}
+		}
+
+		private void superseded() {
+			if (callback != null) {
+				callback.onSuperseded(this);
+			}
+		}
+	}
+
+}
@@ -5,11 +5,21 @@
 package org.jenkinsci.plugins.MaidsafeJenkins.github;
 
 import hudson.*;
-import java.io.IOException;
-import java.io.OutputStream;
+import hudson.util.DaemonThreadFactory;
+
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.jenkinsci.plugins.MaidsafeJenkins.actions.GithubCheckoutAction;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.GitBackend;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.GitModules;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.ShellGitBackend;
+import org.jenkinsci.plugins.MaidsafeJenkins.git.WorkspaceState;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.RingBufferOutputStream;
 import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
 
 /**
@@ -19,61 +29,46 @@ import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
 public class GitHubHelper {
 
 	private PrintStream consoleLogger;
-	private FilePath superProject; // may be it can be needed in future - not used as of now
-	private ShellScript script;
+	private FilePath superProject;
+	private String superProjectName;
+	private GitBackend git;
 	private HashMap<String, String> modulePathMapping;
 	private String defaultBaseBranch = "master";
 	private GithubCheckoutAction checkoutAction;
-	private final String SUM_MODULE_INIT_CMD = "git submodule init";
-	private final String SUB_MODULE_UPDATE_CMD = "git submodule foreach 'git checkout %s && git pull'";
-	private final String SUBMOD_GREP_CMD = "git config --list | sed -rn 's/submodule\\.([^.]*).*\\/(.*)/\\1,\\2/p'";
-	private final String SUPER_PROJ_UPDATE_CMD = "git checkout %s && git pull";
-	private final String HARD_RESET_CMD = "git reset --hard HEAD && git submodule foreach 'git reset --hard HEAD'";
 	private String accessToken;	
+	private int parallelism = DEFAULT_PARALLELISM;
+	private WorkspaceState workspaceState = new WorkspaceState();
+	private boolean worktreeMode;
+	private String branchSuffix = "";
+	private final String SUPER_PROJECT_PATH = ".";
+	
+	private static final int MODULE_OUTPUT_LIMIT = 256 * 1024; // tail of the output of a module held until it completes
+	
+	public static final int DEFAULT_PARALLELISM = 4;
 
 	public GitHubHelper(String superProjectName, FilePath superProject, PrintStream consoleLogger, ShellScript script,
 			String defaultBaseBranch, GithubCheckoutAction checkoutAction) {
+		this(superProjectName, superProject, consoleLogger, new ShellGitBackend(script), defaultBaseBranch, checkoutAction);
+	}
+
+	public GitHubHelper(String superProjectName, FilePath superProject, PrintStream consoleLogger, GitBackend git,
+			String defaultBaseBranch, GithubCheckoutAction checkoutAction) {
 		this.superProject = superProject;
+		this.superProjectName = superProjectName;
 		this.consoleLogger = consoleLogger;
-		this.script = script;
+		this.git = git;
 		this.checkoutAction = checkoutAction;
 		if (defaultBaseBranch != null && !defaultBaseBranch.isEmpty()) {
 			this.defaultBaseBranch = defaultBaseBranch;
 		}
 		updateSubModuleConfig();
-		modulePathMapping.put(superProjectName, ".");
+		modulePathMapping.put(superProjectName, SUPER_PROJECT_PATH);
 	}
 
 	private void updateSubModuleConfig() {
-		String temp;
-		String[] splittedArray;
-		Scanner scanner;
+		modulePathMapping = new HashMap<String, String>();
 		try {
-			final StringBuilder submodulesOutput = new StringBuilder();
-			List<String> commands = new ArrayList<String>();
-			commands.add(SUM_MODULE_INIT_CMD);
-			commands.add(SUBMOD_GREP_CMD);
-			// Creating a temporary output stream to get the execution data
-			// Would be cheaper that to pipe it to a file and read it later
-			OutputStream outStream = new OutputStream() {
-
-				@Override
-				public void write(int b) throws IOException {					
-					submodulesOutput.append((char) b);
-				}
-				
-			};
-			script.execute(commands, outStream); 
-			scanner = new Scanner(submodulesOutput.toString());
-			modulePathMapping = new HashMap<String, String>();			
-			while (scanner.hasNextLine()) {				
-				temp = scanner.nextLine();		
-				splittedArray = temp.split(",");
-				if (splittedArray.length != 2 || splittedArray[0].contains("git config --list")) {
-					continue;
-				}				
-				modulePathMapping.put(splittedArray[1].trim().toLowerCase(), splittedArray[0].trim());
-			}
+			modulePathMapping.putAll(GitModules.read(superProject));
 			consoleLogger.println(modulePathMapping.size() + " sub modules were found");
 		} catch (Exception ex) {
 			consoleLogger.println(ex);
@@ -84,29 +79,74 @@ public class GitHubHelper {
 		accessToken = token;
 	}
 	
-	private void doHardReset() {
+	/**
+	 * Resets the modules which could not be checked out, the other modules are left as they are
+	 */
+	private void resetModules(Collection<String> modules) {
 		try {
-			List<String> commands = new ArrayList<String>();
-			commands.add(HARD_RESET_CMD);
-			script.execute(commands);
+			runInModules(modules, new ModuleOperation() {
+				public boolean run(String module, String path, PrintStream output) throws Exception {
+					workspaceState.markTouched(path);
+					return git.resetModule(path, output);
+				}
+			});
 		} catch(Exception e) {
 			consoleLogger.println(e);
 		}
 	}
+	
+	/**
+	 * Checks out the module to the latest default base branch. The checkout is skipped when the
+	 * {@link WorkspaceState} shows that the module is already there, a module touched by the previous build
+	 * is reset first.
+	 */
+	private boolean checkoutBaseBranch(String path, PrintStream output) throws Exception {
+		String remoteSha;
+		String headSha;
+		if (workspaceState.isTouched(path)) {
+			git.resetModule(path, output);
+		} else {
+			remoteSha = git.getRemoteHead(path, defaultBaseBranch);
+			headSha = WorkspaceState.getHeadOnBranch(superProject.child(path), getCheckedOutBranch());
+			if (workspaceState.isUpToDate(path, remoteSha, headSha)) {
+				output.println(path + " is up to date with " + defaultBaseBranch + " (" + headSha + "), checkout skipped");
+				return true;
+			}
+		}
+		if (!git.checkoutBranch(path, defaultBaseBranch, output)) {
+			workspaceState.markTouched(path);
+			return false;
+		}
+		workspaceState.setBaseSha(path, WorkspaceState.getHeadOnBranch(superProject.child(path), getCheckedOutBranch()));
+		return true;
+	}
 
 
-	@SuppressWarnings("unchecked")
-	public GithubCheckoutAction checkoutModules(Map<String, Map<String, Object>> prList) throws Exception {
+	/**
+	 * Checks out the super project and the submodules to the default base branch and merges the Pull Requests.
+	 * The submodules are updated and merged concurrently, up to {@link #setParallelism(int)} modules at a time.
+	 * If the merge fails in any module, the merges in all the modules are rolled back.
+	 */
+	public GithubCheckoutAction checkoutModules(final Map<String, PullRequest> prList) throws Exception {
 		int scriptExecutionStatus;
 		String temp = null;		
-		Map<String, Object> pullRequest;
-		List<String> command = new ArrayList<String>();		
-		command.add(String.format(SUPER_PROJ_UPDATE_CMD, defaultBaseBranch));
-		command.add(String.format(SUB_MODULE_UPDATE_CMD, defaultBaseBranch));
-		scriptExecutionStatus = script.execute(command);
+		PullRequest pullRequest;
+		List<String> failedModules;
+		StringBuilder failureReason;
+		failedModules = new ArrayList<String>();
+		if (!checkoutBaseBranch(SUPER_PROJECT_PATH, consoleLogger)) {
+			failedModules.add(superProjectName);
+		} else {
+			failedModules = runInModules(getSubModuleNames(), new ModuleOperation() {
+				public boolean run(String module, String path, PrintStream output) throws Exception {
+					return checkoutBaseBranch(path, output);
+				}
+			});
+		}
+		scriptExecutionStatus = failedModules.isEmpty() ? 0 : 1;
 		consoleLogger.println("Execution status  ::: " + scriptExecutionStatus);
 		if (scriptExecutionStatus != 0) {
-			doHardReset();
+			resetModules(failedModules);
 			throw new Exception("Checking out modules to the latest " + defaultBaseBranch + " failed. Check the logs");
 		}
 		consoleLogger.println("Super project and Sub modules were checked out to the " +
@@ -114,47 +154,134 @@ public class GitHubHelper {
 		if (prList == null || prList.isEmpty()) {			
 			return checkoutAction;
 		}
-		Iterator<String> prModules = prList.keySet().iterator();
-		while (prModules.hasNext()) {
-			command = new ArrayList<String>();
-			temp = prModules.next();
-			if (!modulePathMapping.containsKey(temp)) {
-				consoleLogger.println("ERROR :: " + temp + " could not be found. ");
+		failedModules = runInModules(prList.keySet(), new ModuleOperation() {
+			public boolean run(String module, String path, PrintStream output) throws Exception {
+				PullRequest pullRequest = prList.get(module);
+				workspaceState.markTouched(path);
+				return git.mergeBranch(path, getLocalBranchName(pullRequest), getRemoteBranchNameToMerge(pullRequest),
+						pullRequest.getHeadSshUrl(), getBaseBranchNameFromPR(pullRequest), pullRequest.getHeadSha(), output);
 			}
-			pullRequest = prList.get(temp);
-			command.add("cd " + modulePathMapping.get(temp));
-			command.addAll(buildPRMergeCommands(pullRequest));			
-			scriptExecutionStatus = script.execute(command);
-			if (scriptExecutionStatus != 0) {
-				doHardReset();
-				checkoutAction.setBuildPassed(false);
-				checkoutAction.setReasonForFailure("Merge from remote branch " + getBaseBranchNameFromPR(pullRequest) + " with local branch " +
-						getRemoteBranchNameToMerge(pullRequest) + " has encountered conflicts in module - " + temp);				
+		});
+		for (String module : prList.keySet()) {
+			temp = module;
+			checkoutAction.addBranchUsedByModule(module, getLocalBranchName(prList.get(module)));
+		}
+		if (!failedModules.isEmpty()) {
+			rollbackMerges(prList);
+			failureReason = new StringBuilder();
+			for (String module : failedModules) {
+				pullRequest = prList.get(module);
+				failureReason.append("Merge from remote branch ").append(getBaseBranchNameFromPR(pullRequest))
+						.append(" with local branch ").append(getRemoteBranchNameToMerge(pullRequest))
+						.append(" has encountered conflicts in module - ").append(module).append("\n");
 			}
-			checkoutAction.addBranchUsedByModule(temp, getBaseBranchNameFromPR(pullRequest));
-		}					
-		checkoutAction.setBranchTarget(((Map<String, Object>) prList.get(temp).get("head")).get("ref").toString());	
+			checkoutAction.setBuildPassed(false);
+			checkoutAction.setReasonForFailure(failureReason.toString().trim());
+		}
+		checkoutAction.setBranchTarget(prList.get(temp).getHeadRef());	
 		return checkoutAction;
 	}
 	
-	private String getRemoteBranchNameToMerge(Map<String, Object> pullRequest) {
-		return ((Map) pullRequest.get("base")).get("ref").toString();
+	/**
+	 * Sets the state of the workspace kept from the previous builds, by default every module is checked out
+	 */
+	public void setWorkspaceState(WorkspaceState workspaceState) {
+		this.workspaceState = workspaceState;
 	}
 	
-	private String getBaseBranchNameFromPR(Map<String, Object> pullRequest) {		
-		return ((Map<String, Object>) pullRequest.get("head")).get("ref").toString();
+	/**
+	 * Sets the modules as worktrees of shared clones, checked out detached. The local branches created for the
+	 * merges are suffixed to be unique to the build, as they are shared with the other worktrees
+	 */
+	public void setWorktreeMode(String branchSuffix) {
+		this.worktreeMode = true;
+		this.branchSuffix = branchSuffix;
 	}
-
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private List<String> buildPRMergeCommands(Map<String, Object> pullRequest) {
-		List<String> mergeCommand = new ArrayList<String>();		
-		String localBranch = getBaseBranchNameFromPR(pullRequest);
-		String baseBranch = getRemoteBranchNameToMerge(pullRequest);
-		String pullRemoteSSHUrl = ( (Map) ((Map<String, Object>) pullRequest.get("head")).get("repo"))
-				.get("ssh_url").toString();
-		mergeCommand.add("git checkout -b " + localBranch + " " + baseBranch);
-		mergeCommand.add("git pull " + pullRemoteSSHUrl + " " + localBranch);
-		return mergeCommand;
+	
+	/**
+	 * @return the branch the modules are on once checked out, null if they are detached
+	 */
+	private String getCheckedOutBranch() {
+		return worktreeMode ? null : defaultBaseBranch;
+	}
+	
+	public void setParallelism(int parallelism) {
+		if (parallelism > 0) {
+			this.parallelism = parallelism;
+		}
+	}
+	
+	private List<String> getSubModuleNames() {
+		List<String> moduleNames = new ArrayList<String>();
+		for (Map.Entry<String, String> module : modulePathMapping.entrySet()) {
+			if (!SUPER_PROJECT_PATH.equals(module.getValue())) {
+				moduleNames.add(module.getKey());
+			}
+		}
+		return moduleNames;
+	}
+	
+	/**
+	 * Brings the modules of the Pull Requests back to the base branch and removes the temporary branches,
+	 * so that no module is left merged when the merge has failed in another module
+	 */
+	private void rollbackMerges(final Map<String, PullRequest> prList) throws Exception {
+		consoleLogger.println("Rolling back the merges in " + prList.size() + " modules");
+		runInModules(prList.keySet(), new ModuleOperation() {
+			public boolean run(String module, String path, PrintStream output) throws Exception {
+				PullRequest pullRequest = prList.get(module);
+				return git.rollbackMerge(path, getRemoteBranchNameToMerge(pullRequest), getLocalBranchName(pullRequest),
+						output);
+			}
+		});
+	}
+	
+	/**
+	 * Runs the operation for each module, up to parallelism modules concurrently.
+	 * The output of each module is written to the console once the module has completed.
+	 * @return modules for which the operation failed, in the order of modules
+	 */
+	private List<String> runInModules(Collection<String> modules, ModuleOperation operation) throws Exception {
+		ExecutorService pool;
+		Map<String, Future<Boolean>> results = new LinkedHashMap<String, Future<Boolean>>();
+		List<String> failedModules = new ArrayList<String>();
+		if (modules.isEmpty()) {
+			return failedModules;
+		}
+		pool = Executors.newFixedThreadPool(Math.min(parallelism, modules.size()), new DaemonThreadFactory());
+		try {
+			for (String module : modules) {
+				results.put(module, pool.submit(new ModuleTask(module, operation)));
+			}
+			for (Map.Entry<String, Future<Boolean>> result : results.entrySet()) {
+				try {
+					if (!result.getValue().get()) {
+						failedModules.add(result.getKey());
+					}
+				} catch (ExecutionException ex) {
+					consoleLogger.println("ERROR :: " + result.getKey() + " :: " + ex.getCause());
+					failedModules.add(result.getKey());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return failedModules;
+	}
+	
+	private String getRemoteBranchNameToMerge(PullRequest pullRequest) {
+		return pullRequest.getBaseRef();
+	}
+	
+	private String getBaseBranchNameFromPR(PullRequest pullRequest) {		
+		return pullRequest.getHeadRef();
+	}
+	
+	/**
+	 * Local branch created for merging the Pull Request
+	 */
+	private String getLocalBranchName(PullRequest pullRequest) {
+		return getBaseBranchNameFromPR(pullRequest) + branchSuffix;
 	}
 
 	public List<String> getModuleNames() {
@@ -166,11 +293,47 @@ public class GitHubHelper {
 		return moduleNames;
 	}
 
+	/**
+	 * Paths of the super project and the submodules keyed by the module name
+	 */
+	public Map<String, String> getModulePaths() {
+		return Collections.unmodifiableMap(modulePathMapping);
+	}
+
 	public String getSubModulePath(String submoduleName) {
 		if (submoduleName == null || submoduleName.isEmpty()) {
 			return null;
 		}
 		return modulePathMapping.get(submoduleName.toLowerCase());
 	}
+	
+	private static interface ModuleOperation {
+		boolean run(String module, String path, PrintStream output) throws Exception;
+	}
+	
+	private class ModuleTask implements Callable<Boolean> {
+		private final String module;
+		private final ModuleOperation operation;
+		
+		ModuleTask(String module, ModuleOperation operation) {
+			this.module = module;
+			this.operation = operation;
+		}
+
+		public Boolean call() throws Exception {
+			boolean success;
+			RingBufferOutputStream output = new RingBufferOutputStream(MODULE_OUTPUT_LIMIT);
+			if (!modulePathMapping.containsKey(module)) {
+				consoleLogger.println("ERROR :: " + module + " could not be found. ");
+				return false;
+			}
+			success = operation.run(module, modulePathMapping.get(module), new PrintStream(output, true));
+			synchronized (consoleLogger) {
+				consoleLogger.println("[" + module + "] completed " + (success ? "successfully" : "with errors"));
+				output.writeTo(consoleLogger);
+			}
+			return success;
+		}
+	}
 
 }
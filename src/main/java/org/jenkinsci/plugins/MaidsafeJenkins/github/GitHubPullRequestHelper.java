@@ -4,17 +4,35 @@
  */
 package org.jenkinsci.plugins.MaidsafeJenkins.github;
 
+import hudson.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import net.sf.json.JSONException;
-
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.httpclient.methods.GetMethod;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.match.BranchPrefixMatcher;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.match.PullRequestMatcher;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.match.PullRequestMatcher.KeyMatcher;
 import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 import com.jenkinsci.plugins.MaidsafeJenkins.Exception.BaseBranchMisMatchException;
 import com.jenkinsci.plugins.MaidsafeJenkins.Exception.TooManyPRForModule;
@@ -24,12 +42,16 @@ import com.jenkinsci.plugins.MaidsafeJenkins.Exception.TooManyPRForModule;
  * @author krishnakumarp
  */
 public class GitHubPullRequestHelper {
+	private static final Logger LOGGER = Logger.getLogger(GitHubPullRequestHelper.class.getName());
 
 	private String org;
 	private List<String> repositories;
 	private PrintStream logger;
 
 	
+	/**
+	 * @see BranchPrefixMatcher
+	 */
 	public static enum PR_MATCH_STRATERGY {
 		BRANCH_NAME_STARTS_WITH, BRANCH_NAME_STARTS_WITH_IGNORE_CASE
 	}
@@ -38,10 +60,55 @@ public class GitHubPullRequestHelper {
 		NONE, OPEN
 	}
 
+	/**
+	 * How the Pull Requests are looked up when the matcher can not search them, and they are not in the
+	 * {@link PullRequestIndex}. {@link #SEARCH} and {@link #HEAD_FILTER} look up the Pull Requests of a single
+	 * branch, thus they are used only with a matcher requiring that exact branch name, ie the
+	 * {@link org.jenkinsci.plugins.MaidsafeJenkins.github.match.ExactBranchMatcher}; the lists are fetched for the
+	 * other matchers. The search of the organization covers all the repositories, but its index lags behind the
+	 * new Pull Requests, thus the lists are still fetched when the search matched no Pull Request at all. The head
+	 * filter does not return the Pull Requests of the forks, thus the lists are still fetched for the repositories
+	 * without a Pull Request of the branch.
+	 * With {@link #GRAPHQL}, the lists of all the repositories are fetched with a {@link PullRequestGraphQuery}.
+	 */
+	public static enum LookupMode {
+		LISTING("Fetch the Pull Request list of every repository"),
+		SEARCH("Search the organization for the branch"),
+		HEAD_FILTER("Query every repository for the branch"),
+		GRAPHQL("Fetch the Pull Request lists of all the repositories with GraphQL");
+
+		private final String displayName;
+
+		private LookupMode(String displayName) {
+			this.displayName = displayName;
+		}
+
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		/**
+		 * @return the mode for the configured name, {@link #LISTING} if the name is not set or unknown
+		 */
+		public static LookupMode fromName(String name) {
+			for (LookupMode mode : values()) {
+				if (mode.name().equals(name)) {
+					return mode;
+				}
+			}
+			return LISTING;
+		}
+	}
+
 	private final String PR_REQUEST = "https://api.github.com/repos/%s/%s/pulls?";
-	private final String PR_HEAD_REPO_KEY = "head";
-	private final String PR_BRANCH_KEY = "ref";
+	private final String SEARCH_REQUEST = "https://api.github.com/search/issues?q=%s&per_page=%d";
+	private final int PAGE_SIZE = 100; // maximum page size allowed by Github
+	private final long MAX_SEARCH_CANDIDATES = PAGE_SIZE; // beyond a page, fetching the listings is cheaper
 	private String accessToken;
+	private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+	private LookupMode lookupMode = LookupMode.LISTING;
+	
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
 
 	public GitHubPullRequestHelper(String orgName, List<String> repositories, PrintStream logger) {
 		this.org = orgName;
@@ -49,71 +116,252 @@ public class GitHubPullRequestHelper {
 		this.logger = logger;
 	}
 	
-	// TODO multi thread the PR requests
-	public Map<String, Map<String, Object>> getMatchingPR(String text, Filter filter, PR_MATCH_STRATERGY stratergy)
+	/**
+	 * @see #getMatchingPR(String, Filter, PullRequestMatcher)
+	 */
+	public Map<String, PullRequest> getMatchingPR(String text, Filter filter, PR_MATCH_STRATERGY stratergy)
 			throws Exception {
-		Map<String, Map<String, Object>> matchingPRForModule = new HashMap<String, Map<String, Object>>();
-		JSONObject tempObj = null;
-		String tempBaseBranch;
-		String repoBaseBranch = null;
-		String baseBranchforPR = null;
-		JSONArray prListforRepo;
+		return getMatchingPR(text, filter, new BranchPrefixMatcher(stratergy != PR_MATCH_STRATERGY.BRANCH_NAME_STARTS_WITH));
+	}
+	
+	/**
+	 * Fetches the Pull Request list of every repository concurrently and returns the matching Pull Requests.
+	 * The number of parallel requests is bounded by {@link #setMaxConcurrentRequests(int)}.
+	 * The result preserves the order of the repositories, and the first {@link TooManyPRForModule} cancels the
+	 * requests which are still pending. The base branches are validated once all the matches are collected, in the
+	 * order of the repositories, so the {@link BaseBranchMisMatchException} does not depend on the completion order.
+	 * The repositories held by the {@link PullRequestIndex} are all matched with a single lookup of the index.
+	 * When the matcher can search its candidates, the other repositories are matched with a single search of the
+	 * organization. Otherwise, when the matcher requires an exact branch name, the {@link LookupMode} can look the
+	 * branch up first. The listings are fetched only if none of these found the Pull Requests, with a single
+	 * GraphQL query for all the repositories in the {@link LookupMode#GRAPHQL} mode. As the searches may miss the
+	 * Pull Requests (eg, a Pull Request opened just before the build is not indexed yet), the listings are still
+	 * fetched when the search matched no repository at all.
+	 * @param matcher null to match the branch names starting with the text, ignoring the case
+	 */
+	public Map<String, PullRequest> getMatchingPR(String text, Filter filter, PullRequestMatcher matcher)
+			throws Exception {
+		Map<String, PullRequest> matchingPRForModule = new LinkedHashMap<String, PullRequest>();
+		PullRequest[] matchedPRs = new PullRequest[repositories.size()];
+		RepoMatch[] matches = new RepoMatch[repositories.size()];
+		RepoMatch baseMatch = null;
+		KeyMatcher keyMatcher;
+		Map<String, List<PullRequest>> indexed;
+		Map<String, List<PullRequest>> searched = null;
+		List<Integer> fetched = new ArrayList<Integer>();
+		List<Integer> queried;
 		if (filter == null) {
 			filter = Filter.NONE;
 		}
-		if (stratergy == null) {
-			stratergy = PR_MATCH_STRATERGY.BRANCH_NAME_STARTS_WITH_IGNORE_CASE;
-		}
-		for (String repo : repositories) {
-			prListforRepo = getPRListFromGithub(org, repo, filter);			
-			if (prListforRepo == null || prListforRepo.size() == 0) {
+		keyMatcher = (matcher == null ? new BranchPrefixMatcher(true) : matcher).forKey(text);
+		indexed = filter == Filter.OPEN ? PullRequestIndex.get().find(org, repositories, keyMatcher.getHeadRefPrefix(),
+				true) : new HashMap<String, List<PullRequest>>();
+		for (int i = 0; i < repositories.size(); i++) {
+			if (!indexed.containsKey(repositories.get(i))) {
+				fetched.add(i);
 				continue;
-			}		
-			tempObj = findMatchingPR(text, stratergy, prListforRepo, repo);		
-			if (tempObj != null) {
-				tempBaseBranch = (String) ((JSONObject) tempObj.get("base")).get("ref");
-				if (baseBranchforPR == null) {
-					repoBaseBranch = repo;
-					baseBranchforPR = tempBaseBranch;
-				} else if (!baseBranchforPR.equals(tempBaseBranch)) { 
-					throw new BaseBranchMisMatchException(repo, tempBaseBranch, repoBaseBranch, baseBranchforPR);					
+			}
+			matches[i] = new RepoMatch(i, repositories.get(i),
+					findMatchingPR(keyMatcher, indexed.get(repositories.get(i)), repositories.get(i), null));
+		}
+		if (!indexed.isEmpty()) {
+			logger.println("Matched PR of " + indexed.size() + " repositories from the webhook index");
+		}
+		if (!fetched.isEmpty() && keyMatcher.getSearchQualifiers() != null) {
+			searched = searchCandidates(keyMatcher.getSearchQualifiers(), filter, fetched);
+		} else if (!fetched.isEmpty() && lookupMode == LookupMode.SEARCH && isBranchName(keyMatcher.getHeadBranch())) {
+			searched = searchCandidates("head:" + keyMatcher.getHeadBranch(), filter, fetched);
+		} else if (!fetched.isEmpty() && lookupMode == LookupMode.HEAD_FILTER
+				&& isBranchName(keyMatcher.getHeadBranch())) {
+			fetchMatches(fetched, filter, keyMatcher, keyMatcher.getHeadBranch(), matches);
+			removeMatched(fetched, matches); // the Pull Requests of the forks are still looked up in the lists
+		}
+		if (searched != null) {
+			matchCandidates(searched, fetched, keyMatcher, matches);
+			if (isAnyMatched(matches)) {
+				fetched.clear();
+			} else {
+				// the search index lags behind the new Pull Requests, and the title search does not match substrings
+				logger.println("No Pull Request matched the search, fetching the Pull Request lists");
+			}
+		}
+		if (!fetched.isEmpty() && lookupMode == LookupMode.GRAPHQL) {
+			searched = queryLists(filter, fetched);
+			queried = new ArrayList<Integer>();
+			for (int i : fetched) {
+				if (searched != null && searched.containsKey(repositories.get(i).toLowerCase())) {
+					queried.add(i);
 				}
-				matchingPRForModule.put(repo, toMap(tempObj));
+			}
+			matchCandidates(searched, queried, keyMatcher, matches);
+			fetched.removeAll(queried); // the repositories which failed are fetched with the REST API
+		}
+		if (!fetched.isEmpty()) {
+			fetchMatches(fetched, filter, keyMatcher, null, matches);
+		}
+		for (RepoMatch repoMatch : matches) {
+			if (repoMatch != null) {
+				baseMatch = record(repoMatch, baseMatch, matchedPRs);
+			}
+		}
+		for (int i = 0; i < matchedPRs.length; i++) {
+			if (matchedPRs[i] != null) {
+				matchingPRForModule.put(repositories.get(i), matchedPRs[i]);
 			}
 		}
 		logger.println(matchingPRForModule.size() + " modules have matching Pull Requests");
+		logger.println("Pull Request cache :: " + PullRequestListCache.get());
+		logger.println(PullRequestIndex.get());
 		return matchingPRForModule;
 	}
 	
-	public void setAccessToken(String token) {
-		accessToken = token;
+	/**
+	 * Fetches the Pull Request lists of the repositories concurrently and collects their matches
+	 * @param indexes positions of the repositories
+	 * @param headBranch to fetch only the Pull Requests of the branch, null to fetch the complete lists
+	 * @param matches receives the match of each repository at its position
+	 */
+	private void fetchMatches(List<Integer> indexes, Filter filter, KeyMatcher keyMatcher, String headBranch,
+			RepoMatch[] matches) throws Exception {
+		RepoMatch repoMatch;
+		ExecutorService pool;
+		CompletionService<RepoMatch> completionService;
+		pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrentRequests, indexes.size())),
+				new DaemonThreadFactory());
+		completionService = new ExecutorCompletionService<RepoMatch>(pool);
+		try {
+			for (int i : indexes) {
+				completionService.submit(new RepoMatchTask(i, repositories.get(i), filter, keyMatcher, headBranch));
+			}
+			for (int completed = 0; completed < indexes.size(); completed++) {
+				try {
+					repoMatch = completionService.take().get();
+				} catch (ExecutionException ex) {
+					throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+				}
+				matches[repoMatch.index] = repoMatch;
+			}
+		} finally {
+			// Drops the queued requests and interrupts the running ones when a fatal error is thrown
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Matches the candidates found by a search and collects the matches
+	 * @param candidates keyed by the lower case name of the repository
+	 * @param indexes positions of the searched repositories
+	 * @param matches receives the match of each repository at its position
+	 */
+	private void matchCandidates(Map<String, List<PullRequest>> candidates, List<Integer> indexes,
+			KeyMatcher keyMatcher, RepoMatch[] matches) throws Exception {
+		List<PullRequest> repoCandidates;
+		for (int i : indexes) {
+			repoCandidates = candidates.get(repositories.get(i).toLowerCase());
+			matches[i] = new RepoMatch(i, repositories.get(i), findMatchingPR(keyMatcher,
+					repoCandidates == null ? new ArrayList<PullRequest>() : repoCandidates, repositories.get(i), null));
+		}
 	}
-		
 	
-	private boolean isMatchFound(PR_MATCH_STRATERGY stratergy, String prBranchRef, String key) {		
-		boolean matched;		
-		switch (stratergy) {
-			case BRANCH_NAME_STARTS_WITH:
-				matched = prBranchRef.startsWith(key);
-				break;
+	/**
+	 * Fetches the Pull Request lists of the repositories with GraphQL, the open Pull Requests seed the
+	 * {@link PullRequestIndex}
+	 * @param indexes positions of the repositories
+	 * @return Pull Requests keyed by the lower case name of the repository, only for the repositories which were
+	 * fetched successfully; null if the GraphQL API can not be used
+	 */
+	private Map<String, List<PullRequest>> queryLists(Filter filter, List<Integer> indexes) {
+		Map<String, List<PullRequest>> lists;
+		List<String> queried = new ArrayList<String>();
+		Map<String, List<PullRequest>> candidates = new HashMap<String, List<PullRequest>>();
+		long seedStartedAt = PullRequestIndex.get().startSeed();
+		for (int i : indexes) {
+			queried.add(repositories.get(i));
+		}
+		lists = new PullRequestGraphQuery(accessToken, logger).fetch(org, queried, filter);
+		if (lists == null) {
+			logger.println("Fetching the Pull Request lists of the repositories one by one");
+			return null;
+		}
+		for (Map.Entry<String, List<PullRequest>> entry : lists.entrySet()) {
+			if (filter == Filter.OPEN) {
+				PullRequestIndex.get().seed(org, entry.getKey(), entry.getValue(), seedStartedAt);
+			}
+			candidates.put(entry.getKey().toLowerCase(), entry.getValue());
+		}
+		return candidates;
+	}
+	
+	private static boolean isAnyMatched(RepoMatch[] matches) {
+		for (RepoMatch repoMatch : matches) {
+			if (repoMatch != null && repoMatch.pullRequest != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static void removeMatched(List<Integer> indexes, RepoMatch[] matches) {
+		Iterator<Integer> iterator = indexes.iterator();
+		Integer index;
+		while (iterator.hasNext()) {
+			index = iterator.next();
+			if (matches[index] != null && matches[index].pullRequest != null) {
+				iterator.remove();
+			}
+		}
+	}
 	
-			default: // BRANCH_NAME_STARTS_WITH_IGNORE_CASE
-				matched = prBranchRef.toLowerCase().startsWith(key.toLowerCase());
-				break;
-		}	
-		return matched;
+	/**
+	 * @return false if the text is null or can not be a branch name, thus can not be looked up as one
+	 */
+	private static boolean isBranchName(String text) {
+		return text != null && !text.isEmpty() && !text.matches(".*[\\s\"~^:?*\\[\\\\].*");
+	}
+	
+	/**
+	 * Records the Pull Request matched in a repository, all the Pull Requests must have the same base branch
+	 * @param baseMatch first match recorded, null if none
+	 * @return first match recorded
+	 */
+	private RepoMatch record(RepoMatch repoMatch, RepoMatch baseMatch, PullRequest[] matchedPRs)
+			throws BaseBranchMisMatchException {
+		if (repoMatch.pullRequest == null) {
+			return baseMatch;
+		}
+		if (baseMatch != null && !baseMatch.pullRequest.getBaseRef().equals(repoMatch.pullRequest.getBaseRef())) {
+			throw new BaseBranchMisMatchException(repoMatch.repo, repoMatch.pullRequest.getBaseRef(), baseMatch.repo,
+					baseMatch.pullRequest.getBaseRef());
+		}
+		matchedPRs[repoMatch.index] = repoMatch.pullRequest;
+		return baseMatch == null ? repoMatch : baseMatch;
 	}
 
-	private JSONObject findMatchingPR(String key, PR_MATCH_STRATERGY stratergy, JSONArray prList, String repo) throws Exception {
-		JSONObject pullRequest;
-		JSONObject prHead;
-		JSONObject lastMatchedPR = null;
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		if (maxConcurrentRequests > 0) {
+			this.maxConcurrentRequests = maxConcurrentRequests;
+		}
+	}
+	
+	public void setAccessToken(String token) {
+		accessToken = token;
+	}
+	
+	public void setLookupMode(LookupMode lookupMode) {
+		this.lookupMode = lookupMode == null ? LookupMode.LISTING : lookupMode;
+	}
+		
+	
+	/**
+	 * Matches the Pull Requests in one page of the listing.
+	 * The match from the previous pages is passed in, so that more than one matching Pull Request spanning 
+	 * across the pages is still reported as {@link TooManyPRForModule}
+	 */
+	private PullRequest findMatchingPR(KeyMatcher keyMatcher, List<PullRequest> prList, String repo,
+			PullRequest lastMatchedPR) throws Exception {
 		boolean matched;
-		for (Object obj : prList) {
-			matched = false;
-			pullRequest = (JSONObject) obj;
-			prHead = (JSONObject) pullRequest.get(PR_HEAD_REPO_KEY);			
-			matched = isMatchFound(stratergy, prHead.get(PR_BRANCH_KEY).toString().replace("-", "_"), key.replace("-", "_"));// Replacing the characters to ensure uniformity 
+		for (PullRequest pullRequest : prList) {
+			matched = keyMatcher.matches(pullRequest);
 			if (matched && lastMatchedPR != null) { // Only one PR should match, thus a validation to check the	condition				
 				throw new TooManyPRForModule(repo);
 			} else if (matched) {
@@ -123,71 +371,233 @@ public class GitHubPullRequestHelper {
 		return lastMatchedPR;
 	}
 
-	private String prepareURL(String org, String repo, Filter filter) {
+	private String prepareURL(String org, String repo, Filter filter, String headBranch) throws UnsupportedEncodingException {
 		StringBuilder endPoint = new StringBuilder(String.format(PR_REQUEST, org, repo));		
+		if (headBranch != null) {
+			endPoint.append("head=").append(URLEncoder.encode(org + ":" + headBranch, "UTF-8")).append("&");
+		}
 		switch (filter) {
 		case OPEN:
-			endPoint.append("state=open");
+			endPoint.append("state=open&");
 			break;
 
 		default:
 			break;
-		}		
+		}
+		endPoint.append("per_page=").append(PAGE_SIZE);
 		return endPoint.toString();
 	}
+	
+	/**
+	 * Walks through the pages of the Pull Request listing by following the Link headers and matches each page
+	 * as it is received. The complete listing of the open Pull Requests seeds the {@link PullRequestIndex}, the
+	 * pages are retained for it only when the index is enabled.
+	 * @param headBranch to list only the Pull Requests of the branch in the organization repository (the
+	 * branches of the forks are not filtered), null for the complete listing
+	 * @return matching Pull Request, null if no Pull Request matched or the listing could not be fetched 
+	 */
+	private PullRequest fetchMatchingPRInRepo(String org, String repo, Filter filter, KeyMatcher keyMatcher,
+			String headBranch) throws Exception {
+		PullRequestPage page;
+		PullRequest matchedPR = null;
+		String pageUrl = prepareURL(org, repo, filter, headBranch);
+		int pageNumber = 1;
+		long seedStartedAt = PullRequestIndex.get().startSeed();
+		List<PullRequest> openPullRequests = filter == Filter.OPEN && headBranch == null
+				&& PullRequestIndex.get().isEnabled() ? new ArrayList<PullRequest>() : null;
+		logger.println("Fetching PR from " + org + "/" + repo + (headBranch == null ? "" : " for " + headBranch));
+		while (pageUrl != null) {
+			page = getPRPageFromGithub(pageUrl, PullRequestListCache.key(org, repo, filter, headBranch, pageNumber));
+			if (page == null) {
+				return null;
+			}
+			matchedPR = findMatchingPR(keyMatcher, page.getPullRequests(), repo, matchedPR);
+			if (openPullRequests != null) {
+				openPullRequests.addAll(page.getPullRequests());
+			}
+			pageUrl = page.getNextPage();
+			pageNumber++;
+		}
+		if (openPullRequests != null) {
+			PullRequestIndex.get().seed(org, repo, openPullRequests, seedStartedAt);
+		}
+		return matchedPR;
+	}
 
-	private JSONArray getPRListFromGithub(String org, String repo, Filter filter) {
-		logger.println("Fetching PR from " + org + "/" + repo);
-		JSONArray openPrs = null;		
+	/**
+	 * Searches the Pull Requests of the organization with the qualifiers of the matcher, then fetches the
+	 * Pull Requests found in the repositories, as the search results do not hold their branches.
+	 * @param indexes positions of the searched repositories
+	 * @return candidates keyed by the lower case name of the repository, null if the search failed or found too
+	 * many candidates
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, List<PullRequest>> searchCandidates(String qualifiers, Filter filter, List<Integer> indexes) {
+		Object searchJson;
+		Object pullRequestJson;
+		Map<String, Object> result;
+		Map<String, Object> pullRequestLink;
+		String repo;
+		String query = qualifiers + " type:pr org:" + org + (filter == Filter.OPEN ? " state:open" : "");
+		Set<String> searchedRepos = new HashSet<String>();
+		Map<String, List<PullRequest>> candidates = new HashMap<String, List<PullRequest>>();
+		for (int i : indexes) {
+			searchedRepos.add(repositories.get(i).toLowerCase());
+		}
+		logger.println("Searching PR in " + org + " :: " + query);
+		try {
+			searchJson = getJsonFromGithub(String.format(SEARCH_REQUEST, URLEncoder.encode(query, "UTF-8"), PAGE_SIZE));
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+		if (!(searchJson instanceof Map)) {
+			return null;
+		}
+		result = (Map<String, Object>) searchJson;
+		if (Boolean.TRUE.equals(result.get("incomplete_results"))
+				|| ((Number) result.get("total_count")).longValue() > MAX_SEARCH_CANDIDATES) {
+			logger.println("Search found too many candidates, fetching the Pull Request lists");
+			return null;
+		}
+		for (Map<String, Object> item : (List<Map<String, Object>>) result.get("items")) {
+			repo = item.get("repository_url").toString();
+			repo = repo.substring(repo.lastIndexOf('/') + 1).toLowerCase();
+			pullRequestLink = (Map<String, Object>) item.get("pull_request");
+			if (!searchedRepos.contains(repo) || pullRequestLink == null) {
+				continue;
+			}
+			pullRequestJson = getJsonFromGithub(pullRequestLink.get("url").toString());
+			if (!(pullRequestJson instanceof Map)) {
+				return null;
+			}
+			if (!candidates.containsKey(repo)) {
+				candidates.put(repo, new ArrayList<PullRequest>());
+			}
+			candidates.get(repo).add(PullRequest.fromMap((Map<String, Object>) pullRequestJson));
+		}
+		return candidates;
+	}
+	
+	/**
+	 * Fetches a JSON document which is not cached (search results, single Pull Request)
+	 * @return parsed response, null if the request failed
+	 */
+	private Object getJsonFromGithub(String url) {
 		try {
-			HttpClient client = new HttpClient();						
-			GetMethod prListRequest = new GetMethod(prepareURL(org, repo, filter));			
-			if (accessToken != null && !accessToken.isEmpty()) {
-				prListRequest.addRequestHeader("Authorization", "token " + accessToken);				
-			}			
-			
-			int statusCode = client.executeMethod(prListRequest);
-			if (statusCode != HttpStatus.SC_OK) {
-				logger.println("Pull Request API failed with Error Code :: " + statusCode);
-				logger.println(prListRequest.getResponseBodyAsString());
-				return openPrs;
-			}
-			openPrs = (JSONArray) new JSONParser().parse(prListRequest.getResponseBodyAsString());			
+			return GitHubTransport.get().execute(new HttpGet(url), accessToken, new ResponseHandler<Object>() {
+
+				public Object handleResponse(HttpResponse response) throws IOException {
+					int statusCode = response.getStatusLine().getStatusCode();
+					if (statusCode != HttpStatus.SC_OK || response.getEntity() == null) {
+						logger.println("Github API failed with Error Code :: " + statusCode);
+						logger.println(response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8"));
+						return null;
+					}
+					try {
+						return new JSONParser().parse(EntityUtils.toString(response.getEntity(), "UTF-8"));
+					} catch (ParseException ex) {
+						throw new IOException("Invalid response received :: " + ex);
+					}
+				}
+			});
 		} catch (Exception ex) {
-			ex.printStackTrace();
+			LOGGER.log(Level.WARNING, "Github request failed :: " + url, ex);
 			logger.println(ex);
 		}
-		return openPrs;
+		return null;
 	}
 
-	private Map<String, Object> toMap(JSONObject object) throws JSONException {
-		Map<String, Object> map = new HashMap<String, Object>();
-		Iterator<String> keysItr = object.keySet().iterator();
-		while (keysItr.hasNext()) {
-			String key = keysItr.next();
-			Object value = object.get(key);
-
-			if (value instanceof JSONArray) {
-				value = toList((JSONArray) value);
-			} else if (value instanceof JSONObject) {
-				value = toMap((JSONObject) value);
+	/**
+	 * Fetches one page of the Pull Request listing.
+	 * When the page is available in the {@link PullRequestListCache}, a conditional request is sent and the 
+	 * cached page is returned on a 304 response. 
+	 */
+	private PullRequestPage getPRPageFromGithub(String pageUrl, final String cacheKey) {
+		PullRequestPage page = null;
+		final PullRequestListCache cache = PullRequestListCache.get();
+		final PullRequestListCache.Entry cached = cache.lookup(cacheKey);
+		try {
+			HttpGet prListRequest = new HttpGet(pageUrl);
+			if (cached != null && cached.getEtag() != null) {
+				prListRequest.setHeader("If-None-Match", cached.getEtag());
+			} else if (cached != null) {
+				prListRequest.setHeader("If-Modified-Since", cached.getLastModified());
 			}
-			map.put(key, value);
+			page = GitHubTransport.get().execute(prListRequest, accessToken, new ResponseHandler<PullRequestPage>() {
+
+				public PullRequestPage handleResponse(HttpResponse response) throws IOException {
+					PullRequestPage prPage;
+					CountingInputStream responseStream;
+					int statusCode = response.getStatusLine().getStatusCode();
+					if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+						EntityUtils.consume(response.getEntity());
+						return cache.revalidated(cached);
+					}
+					if (statusCode != HttpStatus.SC_OK || response.getEntity() == null) {
+						logger.println("Pull Request API failed with Error Code :: " + statusCode);
+						logger.println(response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8"));
+						return null;
+					}
+					// The listing is parsed while it is streamed, the response body is never held as a String
+					responseStream = new CountingInputStream(response.getEntity().getContent());
+					try {
+						prPage = new PullRequestPage(PullRequestListParser.parse(new InputStreamReader(responseStream, "UTF-8")),
+								PullRequestPage.parseNextPage(getHeaderValue(response, "Link")));
+					} catch (ParseException ex) {
+						throw new IOException("Invalid Pull Request list received :: " + ex);
+					} finally {
+						responseStream.close();
+					}
+					cache.store(cacheKey, getHeaderValue(response, "ETag"), getHeaderValue(response, "Last-Modified"),
+							prPage, responseStream.getByteCount());
+					return prPage;
+				}
+			});
+		} catch (Exception ex) {
+			LOGGER.log(Level.WARNING, "Pull Request page could not be fetched :: " + pageUrl, ex);
+			logger.println(ex);
 		}
-		return map;
+		return page;
+	}
+	
+	private String getHeaderValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
 	}
 
-	private List toList(JSONArray array) throws JSONException {
-		List<Object> list = new ArrayList<Object>();
-		for (int i = 0; i < array.size(); i++) {
-			Object value = array.get(i);
-			if (value instanceof JSONArray) {
-				value = toList((JSONArray) value);
-			} else if (value instanceof JSONObject) {
-				value = toMap((JSONObject) value);
-			}
-			list.add(value);
+	/**
+	 * Result of the Pull Request lookup for a single repository.
+	 * index is the position of the repository, used to keep the results in the same order.
+	 */
+	private static class RepoMatch {
+		private final int index;
+		private final String repo;
+		private final PullRequest pullRequest;
+		
+		RepoMatch(int index, String repo, PullRequest pullRequest) {
+			this.index = index;
+			this.repo = repo;
+			this.pullRequest = pullRequest;
+		}
+	}
+	
+	private class RepoMatchTask implements Callable<RepoMatch> {
+		private final int index;
+		private final String repo;
+		private final Filter filter;
+		private final KeyMatcher keyMatcher;
+		private final String headBranch;
+		
+		RepoMatchTask(int index, String repo, Filter filter, KeyMatcher keyMatcher, String headBranch) {
+			this.index = index;
+			this.repo = repo;
+			this.filter = filter;
+			this.keyMatcher = keyMatcher;
+			this.headBranch = headBranch;
+		}
+
+		public RepoMatch call() throws Exception {
+			return new RepoMatch(index, repo, fetchMatchingPRInRepo(org, repo, filter, keyMatcher, headBranch));
 		}
-		return list;
 	}
 }
@@ -0,0 +1,162 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import hudson.init.Terminator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.RateLimitScheduler.Priority;
+
+/**
+ * Plugin wide HTTP transport for the Github API.
+ * A single pooled connection manager is shared by {@link CommitStatus} and {@link GitHubPullRequestHelper},
+ * so the connections (and the TLS sessions) to api.github.com are kept alive and reused across the builds.
+ * The pool limits and timeouts are configured from the global configuration of the MAIDSafe CI Builder.
+ */
+public class GitHubTransport {
+	public static final int DEFAULT_MAX_CONNECTIONS = 20;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10; // seconds
+	public static final int DEFAULT_SOCKET_TIMEOUT = 30; // seconds
+	private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+	private static final String USER_AGENT = "MaidsafeJenkins";
+	private static final int MAX_RATE_LIMITED_ATTEMPTS = 2;
+
+	private static GitHubTransport instance;
+
+	private final ThreadSafeClientConnManager connectionManager;
+	private final DefaultHttpClient client;
+
+	private GitHubTransport() {
+		connectionManager = new ThreadSafeClientConnManager();
+		client = new DefaultHttpClient(connectionManager);
+		client.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				HeaderElement element;
+				HeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+				while (iterator.hasNext()) {
+					element = iterator.nextElement();
+					if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+						try {
+							return Math.min(Long.parseLong(element.getValue()) * 1000, DEFAULT_KEEP_ALIVE_MILLIS);
+						} catch (NumberFormatException ignored) {
+							break;
+						}
+					}
+				}
+				return DEFAULT_KEEP_ALIVE_MILLIS;
+			}
+		});
+		configure(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+	}
+
+	public static synchronized GitHubTransport get() {
+		if (instance == null) {
+			instance = new GitHubTransport();
+		}
+		return instance;
+	}
+
+	/**
+	 * Updates the pool limits and the timeouts. The changes apply to the connections leased after the call.
+	 * @param maxConnections total number of connections in the pool
+	 * @param maxConnectionsPerHost number of connections per route
+	 * @param connectTimeout connect timeout in seconds
+	 * @param socketTimeout read timeout in seconds
+	 */
+	public void configure(int maxConnections, int maxConnectionsPerHost, int connectTimeout, int socketTimeout) {
+		HttpParams params = client.getParams();
+		connectionManager.setMaxTotal(maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost > 0 ? maxConnectionsPerHost : DEFAULT_MAX_CONNECTIONS_PER_HOST);
+		HttpConnectionParams.setConnectionTimeout(params, (connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECT_TIMEOUT) * 1000);
+		HttpConnectionParams.setSoTimeout(params, (socketTimeout > 0 ? socketTimeout : DEFAULT_SOCKET_TIMEOUT) * 1000);
+	}
+
+	/**
+	 * Executes a listing request through the shared client.
+	 * @see #execute(HttpUriRequest, String, Priority, ResponseHandler)
+	 */
+	public <T> T execute(HttpUriRequest request, String accessToken, ResponseHandler<T> handler) throws IOException {
+		return execute(request, accessToken, Priority.LISTING, handler);
+	}
+
+	/**
+	 * Executes the request through the shared client once the {@link RateLimitScheduler} allows it.
+	 * The handler is responsible for reading the response, the connection is released once the handler returns.
+	 * A request rejected because the rate limit was exhausted is parked until the reset time and sent again.
+	 * @param request
+	 * @param accessToken OAuth token, the Authorization header is not set if the token is empty
+	 * @param priority
+	 * @param handler
+	 * @return value returned by the handler
+	 * @throws IOException
+	 */
+	public <T> T execute(HttpUriRequest request, final String accessToken, Priority priority,
+			final ResponseHandler<T> handler) throws IOException {
+		final RateLimitScheduler scheduler = RateLimitScheduler.get();
+		if (accessToken != null && !accessToken.isEmpty()) {
+			request.setHeader("Authorization", "token " + accessToken);
+		}
+		request.setHeader("User-Agent", USER_AGENT);
+		for (int attempt = 1; ; attempt++) {
+			try {
+				scheduler.acquire(accessToken, priority, request);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the Github rate limit");
+			}
+			connectionManager.closeExpiredConnections();
+			connectionManager.closeIdleConnections(DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+			try {
+				return client.execute(request, new ResponseHandler<T>() {
+					public T handleResponse(HttpResponse response) throws IOException {
+						if (scheduler.update(accessToken, response)) {
+							EntityUtils.consume(response.getEntity());
+							throw new RateLimitExceededException();
+						}
+						return handler.handleResponse(response);
+					}
+				});
+			} catch (RateLimitExceededException ex) {
+				if (attempt >= MAX_RATE_LIMITED_ATTEMPTS) {
+					throw ex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Releases the pooled connections when Jenkins is shutting down
+	 */
+	@Terminator
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.connectionManager.shutdown();
+			instance = null;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class RateLimitExceededException extends IOException {
+		RateLimitExceededException() {
+			super("Github API rate limit exceeded");
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import hudson.FilePath;
+import hudson.model.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Agent local cache of bare mirrors for the submodule repositories.
+ * <p>
+ * Every submodule URL gets a mirror under the root directory of the agent. The mirror is cloned once and then
+ * updated incrementally with git fetch, and the submodules of the workspace are checked out with --reference
+ * to it, so that the objects are borrowed from the mirror (alternates) instead of being fetched again.
+ * The mirror also holds the refs/pull/* of Github, thus the head commits of the Pull Requests, including the ones
+ * of the forks, are available locally and are merged without fetching them, see {@link
+ * org.jenkinsci.plugins.MaidsafeJenkins.git.GitBackend#mergeBranch}.
+ * The objects of a mirror are never garbage collected (gc.auto=0, gc.pruneExpire=never), as the workspaces
+ * borrowing them through the alternates would be corrupted once an object they use was pruned.
+ * Each mirror is updated under a flock on its lock file, so the concurrent builds on an agent can share it.
+ */
+public class GitMirrorCache {
+	private static final String MIRROR_DIR = "maidsafe-git-mirrors";
+	private final FilePath mirrorRoot;
+
+	public GitMirrorCache(FilePath mirrorRoot) {
+		this.mirrorRoot = mirrorRoot;
+	}
+
+	/**
+	 * @return the mirror cache of the node, null if the node is offline
+	 */
+	public static GitMirrorCache forNode(Node node) {
+		FilePath rootPath = node == null ? null : node.getRootPath();
+		return rootPath == null ? null : new GitMirrorCache(rootPath.child(MIRROR_DIR));
+	}
+
+	public FilePath getMirrorRoot() {
+		return mirrorRoot;
+	}
+
+	/**
+	 * Commands to be executed in the super project, replacing git submodule update --init.
+	 * Each submodule mirror is created or fetched under its lock, then the submodule is updated with --reference
+	 */
+	public List<String> getSubmoduleUpdateCommands() {
+		List<String> commands = new ArrayList<String>();
+		String root = mirrorRoot.getRemote();
+		commands.add("mkdir -p '" + root + "'");
+		commands.add("git submodule init");
+		commands.add("git config --get-regexp '^submodule\\..*\\.url$' | while read key url; do"
+				+ " name=${key#submodule.}; name=${name%.url};"
+				+ " path=$(git config -f .gitmodules --get \"submodule.$name.path\" || echo \"$name\");"
+				+ " mirror='" + root + "'/$(echo \"$url\" | sed 's#[^A-Za-z0-9._-]#_#g').git;"
+				+ " ( flock 9;"
+				+ " if [ -d \"$mirror\" ]; then git --git-dir=\"$mirror\" fetch --prune --quiet origin;"
+				+ " else git clone --mirror --quiet \"$url\" \"$mirror\"; fi"
+				+ " && git --git-dir=\"$mirror\" config gc.auto 0"
+				+ " && git --git-dir=\"$mirror\" config gc.pruneExpire never"
+				+ " ) 9>\"$mirror.lock\";"
+				+ " git submodule update --init --reference \"$mirror\" -- \"$path\";"
+				+ " done");
+		return commands;
+	}
+
+}
@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import hudson.FilePath;
+import hudson.model.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Agent local clones of the super project and of the submodule repositories, shared by the workspaces through
+ * git worktrees.
+ * <p>
+ * Every repository is cloned once under the root directory of the agent and fetched by each build. The super
+ * project of a workspace is a worktree of the shared clone, and each submodule of the worktree is in turn a
+ * worktree of the shared clone of the submodule, so a workspace holds the checked out files only.
+ * The worktrees are detached, so any number of workspaces can be on the same branch. The worktrees of the deleted
+ * workspaces are pruned whenever a shared clone is updated.
+ * Each shared clone is updated under a flock on its lock file, so the concurrent builds on an agent can share it.
+ * The worktree of the super project is recreated whenever it is not a worktree, thus it must be a dedicated
+ * subfolder of the workspace. Requires git 2.5 or later for git worktree and git -C.
+ */
+public class GitWorktreeCache {
+	private static final String CLONE_DIR = "maidsafe-git-worktrees";
+	private static final String SUPER_PROJECT_URL = "git@github.com:%s/%s.git";
+	private final FilePath cloneRoot;
+
+	public GitWorktreeCache(FilePath cloneRoot) {
+		this.cloneRoot = cloneRoot;
+	}
+
+	/**
+	 * @return the worktree cache of the node, null if the node is offline
+	 */
+	public static GitWorktreeCache forNode(Node node) {
+		FilePath rootPath = node == null ? null : node.getRootPath();
+		return rootPath == null ? null : new GitWorktreeCache(rootPath.child(CLONE_DIR));
+	}
+
+	public FilePath getCloneRoot() {
+		return cloneRoot;
+	}
+
+	/**
+	 * Commands creating the worktree of the super project at the path, checked out to the base branch, along with
+	 * the worktrees of its submodules. The worktrees already created by a previous build are kept.
+	 */
+	public List<String> getWorktreeCommands(String orgName, String superProjectName, String baseBranch,
+			FilePath worktree) {
+		List<String> commands = new ArrayList<String>();
+		String root = cloneRoot.getRemote();
+		String path = worktree.getRemote();
+		commands.add("git_version=$(git --version | sed 's/^git version \\([0-9]*\\)\\.\\([0-9]*\\).*/\\1 \\2/')");
+		commands.add("set -- $git_version; if [ \"$1\" -lt 2 ] || { [ \"$1\" -eq 2 ] && [ \"$2\" -lt 5 ]; }; then"
+				+ " echo \"git 2.5 or later is required for the worktrees, found $(git --version)\" >&2; exit 1; fi");
+		commands.add("mkdir -p '" + root + "'");
+		commands.add("update_clone() { shared='" + root + "'/$(echo \"$1\" | sed 's#[^A-Za-z0-9._-]#_#g');"
+				+ " ( flock 9;"
+				+ " if [ -d \"$shared\" ]; then git -C \"$shared\" fetch --prune --quiet origin;"
+				+ " else git clone --no-checkout --quiet \"$1\" \"$shared\"; fi;"
+				+ " git -C \"$shared\" worktree prune"
+				+ " ) 9>\"$shared.lock\"; }");
+		commands.add("add_worktree() { ( flock 9; git -C \"$shared\" worktree add --detach \"$1\" \"$2\" )"
+				+ " 9>\"$shared.lock\"; }");
+		commands.add("update_clone '" + String.format(SUPER_PROJECT_URL, orgName, superProjectName) + "'");
+		commands.add("if [ ! -e '" + path + "/.git' ]; then rm -rf '" + path + "'; add_worktree '" + path
+				+ "' origin/" + baseBranch + "; fi");
+		commands.add("cd '" + path + "'");
+		commands.add("git config -f .gitmodules --get-regexp '^submodule\\..*\\.path$' | while read key path; do"
+				+ " name=${key#submodule.}; name=${name%.path};"
+				+ " url=$(git config -f .gitmodules --get \"submodule.$name.url\");"
+				+ " if [ ! -e \"$path/.git\" ]; then"
+				+ " update_clone \"$url\";"
+				+ " rm -rf \"$path\";"
+				+ " add_worktree \"$PWD/$path\" $(git rev-parse \"HEAD:$path\");"
+				+ " git config \"submodule.$name.url\" \"$url\";"
+				+ " fi;"
+				+ " done");
+		return commands;
+	}
+
+}
@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact and immutable view of a Github Pull Request.
+ * Holds only the fields used by the plugin instead of the complete JSON received from the Pull Request API.
+ */
+public final class PullRequest implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String headRef;
+	private final String headSha;
+	private final String headSshUrl;
+	private final String baseRef;
+	private final String htmlUrl;
+	private final String title;
+	private final List<String> labels;
+
+	public PullRequest(String headRef, String headSha, String headSshUrl, String baseRef, String htmlUrl) {
+		this(headRef, headSha, headSshUrl, baseRef, htmlUrl, null, null);
+	}
+
+	public PullRequest(String headRef, String headSha, String headSshUrl, String baseRef, String htmlUrl,
+			String title, List<String> labels) {
+		this.headRef = headRef;
+		this.headSha = headSha;
+		this.headSshUrl = headSshUrl;
+		this.baseRef = baseRef;
+		this.htmlUrl = htmlUrl;
+		this.title = title;
+		this.labels = labels == null || labels.isEmpty() ? null : new ArrayList<String>(labels);
+	}
+
+	/**
+	 * head.ref - branch name of the Pull Request
+	 */
+	public String getHeadRef() {
+		return headRef;
+	}
+
+	/**
+	 * head.sha - latest commit of the Pull Request
+	 */
+	public String getHeadSha() {
+		return headSha;
+	}
+
+	/**
+	 * head.repo.ssh_url - repository from which the Pull Request branch is pulled
+	 */
+	public String getHeadSshUrl() {
+		return headSshUrl;
+	}
+
+	/**
+	 * base.ref - branch into which the Pull Request is to be merged
+	 */
+	public String getBaseRef() {
+		return baseRef;
+	}
+
+	public String getHtmlUrl() {
+		return htmlUrl;
+	}
+
+	/**
+	 * title - null for the Pull Requests persisted by the older versions of the plugin
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * labels[].name - names of the labels of the Pull Request, never null
+	 */
+	public List<String> getLabels() {
+		return labels == null ? Collections.<String>emptyList() : Collections.unmodifiableList(labels);
+	}
+
+	/**
+	 * Creates the record from the nested map of the Pull Request API response.
+	 * Used to migrate the Pull Requests persisted by the older versions of the plugin.
+	 * @return null if the map is null
+	 */
+	@SuppressWarnings("unchecked")
+	public static PullRequest fromMap(Map<String, Object> pullRequest) {
+		Map<String, Object> head;
+		Map<String, Object> headRepo;
+		Map<String, Object> base;
+		List<String> labels = new ArrayList<String>();
+		if (pullRequest == null) {
+			return null;
+		}
+		head = (Map<String, Object>) pullRequest.get("head");
+		base = (Map<String, Object>) pullRequest.get("base");
+		headRepo = head == null ? null : (Map<String, Object>) head.get("repo");
+		if (pullRequest.get("labels") instanceof List) {
+			for (Object label : (List<Object>) pullRequest.get("labels")) {
+				if (label instanceof Map && getString((Map<String, Object>) label, "name") != null) {
+					labels.add(getString((Map<String, Object>) label, "name"));
+				}
+			}
+		}
+		return new PullRequest(getString(head, "ref"), getString(head, "sha"), getString(headRepo, "ssh_url"),
+				getString(base, "ref"), getString(pullRequest, "html_url"), getString(pullRequest, "title"), labels);
+	}
+
+	/**
+	 * Converts the Pull Requests persisted as nested maps, keyed by the module name
+	 */
+	public static Map<String, PullRequest> fromMaps(Map<String, Map<String, Object>> pullRequests) {
+		Map<String, PullRequest> records;
+		if (pullRequests == null) {
+			return null;
+		}
+		records = new LinkedHashMap<String, PullRequest>();
+		for (Map.Entry<String, Map<String, Object>> entry : pullRequests.entrySet()) {
+			records.put(entry.getKey(), fromMap(entry.getValue()));
+		}
+		return records;
+	}
+
+	private static String getString(Map<String, Object> map, String key) {
+		Object value = map == null ? null : map.get(key);
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public String toString() {
+		return htmlUrl + " (" + headRef + " -> " + baseRef + ")";
+	}
+
+}
@@ -0,0 +1,219 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.GitHubPullRequestHelper.Filter;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Fetches the Pull Requests of many repositories with the Github GraphQL API.
+ * <p>
+ * The repositories are queried together, each one under its own alias (r0, r1, ...) of a single query, so that
+ * the Pull Requests of all the modules are received with one request instead of one listing per repository.
+ * The repositories are split into chunks of {@link #REPOSITORIES_PER_QUERY} to bound the size of a query, and
+ * the repositories having more than one page of Pull Requests are queried again from their cursor in the next
+ * round, along with the other remaining ones.
+ * A repository whose part of the query failed (errors of its alias, missing repository or failed request) is
+ * left out of the result, so that it is fetched with the REST API instead of being taken as having no Pull
+ * Request. The GraphQL API requires an access token.
+ */
+public class PullRequestGraphQuery {
+	private static final Logger LOGGER = Logger.getLogger(PullRequestGraphQuery.class.getName());
+	private static final String GRAPHQL_URL = "https://api.github.com/graphql";
+	private static final int REPOSITORIES_PER_QUERY = 20;
+	private static final int PAGE_SIZE = 100; // maximum page size allowed by Github
+	private static final int LABELS_PER_PULL_REQUEST = 20;
+	private static final String PULL_REQUEST_FIELDS = "url title headRefName headRefOid baseRefName "
+			+ "headRepository { sshUrl } labels(first: " + LABELS_PER_PULL_REQUEST + ") { nodes { name } }";
+
+	private final String accessToken;
+	private final PrintStream logger;
+
+	public PullRequestGraphQuery(String accessToken, PrintStream logger) {
+		this.accessToken = accessToken;
+		this.logger = logger;
+	}
+
+	/**
+	 * Fetches the Pull Requests of the repositories
+	 * @return complete lists of the Pull Requests keyed by the repository, only for the repositories which were
+	 * fetched successfully; null if the GraphQL API can not be used
+	 */
+	public Map<String, List<PullRequest>> fetch(String org, List<String> repositories, Filter filter) {
+		List<String> chunk;
+		Map<String, String> cursors;
+		Map<String, String> pending = new LinkedHashMap<String, String>();
+		Map<String, List<PullRequest>> pullRequests = new HashMap<String, List<PullRequest>>();
+		if (accessToken == null || accessToken.isEmpty()) {
+			logger.println("GraphQL API requires an access token");
+			return null;
+		}
+		for (String repo : repositories) {
+			pending.put(repo, null);
+			pullRequests.put(repo, new ArrayList<PullRequest>());
+		}
+		for (int queries = 1; !pending.isEmpty(); queries++) {
+			chunk = new ArrayList<String>(pending.keySet());
+			chunk = chunk.subList(0, Math.min(REPOSITORIES_PER_QUERY, chunk.size()));
+			cursors = new LinkedHashMap<String, String>();
+			for (String repo : chunk) {
+				cursors.put(repo, pending.remove(repo));
+			}
+			logger.println("GraphQL query #" + queries + " for " + chunk.size() + " repositories of " + org);
+			for (String failed : query(org, cursors, filter, pullRequests, pending)) {
+				pullRequests.remove(failed);
+			}
+		}
+		return pullRequests;
+	}
+
+	/**
+	 * Sends one query for the repositories and adds the Pull Requests received
+	 * @param cursors cursor of the page to fetch keyed by the repository, null for the first page
+	 * @param pending receives the cursor of the next page of the repositories having more Pull Requests
+	 * @return repositories whose Pull Requests could not be fetched
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<String> query(String org, Map<String, String> cursors, Filter filter,
+			Map<String, List<PullRequest>> pullRequests, Map<String, String> pending) {
+		int alias = 0;
+		Object response;
+		Object errors;
+		Set<String> failedAliases = new HashSet<String>();
+		Set<String> failed = new HashSet<String>();
+		Map<String, Object> data;
+		Map<String, Object> repository;
+		Map<String, Object> connection;
+		Map<String, Object> pageInfo;
+		StringBuilder query = new StringBuilder("query {");
+		for (Map.Entry<String, String> entry : cursors.entrySet()) {
+			query.append(" r").append(alias++).append(": repository(owner: ").append(quote(org))
+					.append(", name: ").append(quote(entry.getKey())).append(") { pullRequests(first: ")
+					.append(PAGE_SIZE).append(filter == Filter.OPEN ? ", states: OPEN" : "")
+					.append(entry.getValue() == null ? "" : ", after: " + quote(entry.getValue()))
+					.append(") { pageInfo { hasNextPage endCursor } nodes { ").append(PULL_REQUEST_FIELDS)
+					.append(" } } }");
+		}
+		query.append(" }");
+		response = post(query.toString());
+		if (!(response instanceof Map) || !(((Map<String, Object>) response).get("data") instanceof Map)) {
+			logger.println("GraphQL query failed :: " + response);
+			return cursors.keySet();
+		}
+		data = (Map<String, Object>) ((Map<String, Object>) response).get("data");
+		errors = ((Map<String, Object>) response).get("errors");
+		if (errors instanceof List) {
+			for (Object error : (List<Object>) errors) {
+				logger.println("GraphQL error :: " + error);
+				if (error instanceof Map && ((Map<String, Object>) error).get("path") instanceof List
+						&& !((List<Object>) ((Map<String, Object>) error).get("path")).isEmpty()) {
+					failedAliases.add(String.valueOf(((List<Object>) ((Map<String, Object>) error).get("path")).get(0)));
+				}
+			}
+		}
+		alias = 0;
+		for (String repo : cursors.keySet()) {
+			repository = (Map<String, Object>) data.get("r" + alias);
+			if (repository == null || failedAliases.contains("r" + alias)) {
+				logger.println("Pull Requests of " + org + "/" + repo + " could not be fetched with GraphQL");
+				failed.add(repo);
+				pending.remove(repo);
+				alias++;
+				continue;
+			}
+			alias++;
+			connection = (Map<String, Object>) repository.get("pullRequests");
+			for (Map<String, Object> node : (List<Map<String, Object>>) connection.get("nodes")) {
+				if (node != null) { // Pull Requests which can not be read are null
+					pullRequests.get(repo).add(toPullRequest(node));
+				}
+			}
+			pageInfo = (Map<String, Object>) connection.get("pageInfo");
+			if (Boolean.TRUE.equals(pageInfo.get("hasNextPage"))) {
+				pending.put(repo, pageInfo.get("endCursor").toString());
+			}
+		}
+		return failed;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static PullRequest toPullRequest(Map<String, Object> node) {
+		Map<String, Object> headRepository = (Map<String, Object>) node.get("headRepository");
+		Map<String, Object> labels = (Map<String, Object>) node.get("labels");
+		List<String> labelNames = new ArrayList<String>();
+		if (labels != null) {
+			for (Map<String, Object> label : (List<Map<String, Object>>) labels.get("nodes")) {
+				labelNames.add(String.valueOf(label.get("name")));
+			}
+		}
+		return new PullRequest(getString(node, "headRefName"), getString(node, "headRefOid"),
+				getString(headRepository, "sshUrl"), getString(node, "baseRefName"), getString(node, "url"),
+				getString(node, "title"), labelNames);
+	}
+
+	private static String getString(Map<String, Object> map, String key) {
+		Object value = map == null ? null : map.get(key);
+		return value == null ? null : value.toString();
+	}
+
+	/**
+	 * String literal of the query, GraphQL strings are escaped as the JSON ones
+	 */
+	private static String quote(String value) {
+		return "\"" + JSONValue.escape(value) + "\"";
+	}
+
+	/**
+	 * @return parsed response, null if the request failed
+	 */
+	@SuppressWarnings("unchecked")
+	private Object post(String query) {
+		JSONObject payload = new JSONObject();
+		HttpPost postMethod = new HttpPost(GRAPHQL_URL);
+		payload.put("query", query);
+		try {
+			postMethod.setHeader("Content-Type", "application/json");
+			postMethod.setEntity(new StringEntity(payload.toJSONString(), "application/json", "UTF-8"));
+			return GitHubTransport.get().execute(postMethod, accessToken, new ResponseHandler<Object>() {
+
+				public Object handleResponse(HttpResponse response) throws IOException {
+					int statusCode = response.getStatusLine().getStatusCode();
+					if (statusCode != HttpStatus.SC_OK || response.getEntity() == null) {
+						logger.println("GraphQL API failed with Error Code :: " + statusCode);
+						logger.println(response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8"));
+						return null;
+					}
+					try {
+						return new JSONParser().parse(EntityUtils.toString(response.getEntity(), "UTF-8"));
+					} catch (ParseException ex) {
+						throw new IOException("Invalid GraphQL response received :: " + ex);
+					}
+				}
+			});
+		} catch (Exception ex) {
+			LOGGER.log(Level.WARNING, "GraphQL query failed", ex);
+			logger.println(ex);
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,213 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controller wide index of the open Pull Requests of the repositories, kept up to date by the pull_request events
+ * received by the {@link org.jenkinsci.plugins.MaidsafeJenkins.actions.GitHubWebhook}.
+ * <p>
+ * A repository is seeded with the complete listing of its open Pull Requests the first time it is fetched from
+ * the Pull Request API, the events are applied to it from then on. The Pull Requests of all the repositories are
+ * held by one {@link PullRequestTrie}, so the matches of a branch prefix in every repository are found with a
+ * single lookup.
+ * A repository is cold until it is seeded and again once its seed is older than the TTL, in case some events
+ * were not delivered. The cold repositories are left out of the lookups and have to use the Pull Request API.
+ * The index is used only while the webhook is enabled, otherwise the Pull Requests opened after a repository was
+ * seeded would not be found.
+ */
+public class PullRequestIndex {
+	public static final int DEFAULT_TTL = 3600; // seconds
+
+	private static final PullRequestIndex INSTANCE = new PullRequestIndex();
+
+	private long ttlMillis = DEFAULT_TTL * 1000L;
+	private boolean enabled;
+	private final Map<String, RepoIndex> repositories = new HashMap<String, RepoIndex>();
+	private final PullRequestTrie trie = new PullRequestTrie();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong events = new AtomicLong();
+
+	private PullRequestIndex() {
+	}
+
+	public static PullRequestIndex get() {
+		return INSTANCE;
+	}
+
+	public static String key(String org, String repo) {
+		return (org + "/" + repo).toLowerCase();
+	}
+
+	/**
+	 * Enables the index, the repositories are dropped when it is disabled
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			clear();
+		}
+	}
+
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Marks the start of a listing of the open Pull Requests, to be passed to {@link #seed}
+	 */
+	public long startSeed() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Replaces the Pull Requests of the repository with the complete listing of its open Pull Requests.
+	 * The listing is dropped if an event was received for the repository since the listing was started, as the
+	 * listing may not include it; the repository is seeded again by the next lookup.
+	 * @param startedAt value of {@link #startSeed()} taken before fetching the listing
+	 */
+	public synchronized void seed(String org, String repo, Collection<PullRequest> openPullRequests, long startedAt) {
+		String repoKey = key(org, repo);
+		RepoIndex index = repositories.get(repoKey);
+		if (!enabled || (index != null && index.lastEventAt >= startedAt)) {
+			return;
+		}
+		if (index != null) {
+			for (PullRequest pullRequest : index.byUrl.values()) {
+				trie.remove(repoKey, pullRequest);
+			}
+		}
+		index = new RepoIndex();
+		for (PullRequest pullRequest : openPullRequests) {
+			put(repoKey, index, pullRequest);
+		}
+		index.seededAt = System.currentTimeMillis();
+		repositories.put(repoKey, index);
+	}
+
+	/**
+	 * Applies a pull_request event, a Pull Request which is not open is removed from the index
+	 */
+	public synchronized void update(String org, String repo, PullRequest pullRequest, boolean open) {
+		String repoKey = key(org, repo);
+		RepoIndex index = repositories.get(repoKey);
+		events.incrementAndGet();
+		if (!enabled) {
+			return;
+		}
+		if (index == null) {
+			// not seeded yet, the event is remembered to discard a listing which is running concurrently
+			index = new RepoIndex();
+			repositories.put(repoKey, index);
+		}
+		index.lastEventAt = System.currentTimeMillis();
+		if (open) {
+			put(repoKey, index, pullRequest);
+		} else if (index.byUrl.containsKey(pullRequest.getHtmlUrl())) {
+			trie.remove(repoKey, index.byUrl.remove(pullRequest.getHtmlUrl()));
+		}
+	}
+
+	private void put(String repoKey, RepoIndex index, PullRequest pullRequest) {
+		PullRequest previous = index.byUrl.put(pullRequest.getHtmlUrl(), pullRequest);
+		if (previous != null) {
+			trie.remove(repoKey, previous);
+		}
+		trie.put(repoKey, pullRequest);
+	}
+
+	/**
+	 * Looks up the open Pull Requests whose head ref starts with the prefix in all the repositories at once,
+	 * the - and _ in the refs being equivalent
+	 * @param ignoreCase false to match the case of the prefix as well
+	 * @return matching Pull Requests keyed by the repository, for each repository which is warm; the cold
+	 * repositories are not included
+	 */
+	public synchronized Map<String, List<PullRequest>> find(String org, Collection<String> repos, String prefix,
+			boolean ignoreCase) {
+		List<PullRequest> repoMatches;
+		RepoIndex index;
+		Map<String, List<PullRequest>> matches;
+		Map<String, List<PullRequest>> result = new LinkedHashMap<String, List<PullRequest>>();
+		if (!enabled) {
+			return result;
+		}
+		matches = trie.find(prefix, ignoreCase);
+		for (String repo : repos) {
+			index = repositories.get(key(org, repo));
+			if (index == null || !index.isWarm(ttlMillis)) {
+				misses.incrementAndGet();
+				continue;
+			}
+			hits.incrementAndGet();
+			repoMatches = matches.get(key(org, repo));
+			result.put(repo, repoMatches == null ? new ArrayList<PullRequest>() : repoMatches);
+		}
+		return result;
+	}
+
+	/**
+	 * Drops all the repositories, they are seeded again by the next lookups
+	 */
+	public synchronized void clear() {
+		for (Map.Entry<String, RepoIndex> repo : repositories.entrySet()) {
+			for (PullRequest pullRequest : repo.getValue().byUrl.values()) {
+				trie.remove(repo.getKey(), pullRequest);
+			}
+		}
+		repositories.clear();
+	}
+
+	public synchronized int getWarmRepositories() {
+		int warm = 0;
+		for (RepoIndex index : repositories.values()) {
+			if (index.isWarm(ttlMillis)) {
+				warm++;
+			}
+		}
+		return warm;
+	}
+
+	public synchronized int getSize() {
+		return trie.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvents() {
+		return events.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Pull Request index :: repositories=" + getWarmRepositories() + ", pullRequests=" + getSize()
+				+ ", hits=" + getHits() + ", misses=" + getMisses() + ", events=" + getEvents();
+	}
+
+	/**
+	 * Open Pull Requests of one repository, keyed by the html url (unique to a Pull Request)
+	 */
+	private static class RepoIndex {
+		private final Map<String, PullRequest> byUrl = new HashMap<String, PullRequest>();
+		private long seededAt;
+		private long lastEventAt;
+
+		boolean isWarm(long ttlMillis) {
+			return seededAt > 0 && System.currentTimeMillis() - seededAt < ttlMillis;
+		}
+	}
+
+}
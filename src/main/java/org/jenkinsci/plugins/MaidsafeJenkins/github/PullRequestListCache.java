@@ -0,0 +1,215 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.GitHubPullRequestHelper.Filter;
+
+/**
+ * Controller wide cache of the Pull Request listings fetched from Github.
+ * Every page of a listing is cached separately. The ETag and Last-Modified headers of every page are stored
+ * along with it, so that the next fetch can be sent as a conditional request. A 304 response does not count against the Github rate limit.
+ * The entries are evicted in LRU order once the cache is full and once they are older than the TTL.
+ * A hit is counted only when the cached page is served, ie on a 304 response, and a miss whenever the page is
+ * downloaded, whether it was cached or not.
+ */
+public class PullRequestListCache {
+	public static final int DEFAULT_MAX_ENTRIES = 500;
+	public static final int DEFAULT_TTL = 3600; // seconds
+
+	private static final PullRequestListCache INSTANCE = new PullRequestListCache();
+
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+	private long ttlMillis = DEFAULT_TTL * 1000L;
+	private final LinkedHashMap<String, Entry> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	@SuppressWarnings("serial")
+	private PullRequestListCache() {
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static PullRequestListCache get() {
+		return INSTANCE;
+	}
+
+	public static String key(String org, String repo, Filter filter, int page) {
+		return (org + "/" + repo + "/" + filter + "/" + page).toLowerCase();
+	}
+
+	/**
+	 * Key of a listing filtered by the head branch, null for the complete listing
+	 */
+	public static String key(String org, String repo, Filter filter, String headBranch, int page) {
+		return headBranch == null ? key(org, repo, filter, page) : (org + "/" + repo + "/" + filter + "/head:"
+				+ headBranch + "/" + page).toLowerCase();
+	}
+
+	/**
+	 * Updates the limits of the cache. A size of 0 disables the cache.
+	 * @param maxEntries maximum number of listings held
+	 * @param ttl time in seconds after which a listing is evicted
+	 */
+	public synchronized void configure(int maxEntries, int ttl) {
+		this.maxEntries = Math.max(0, maxEntries);
+		this.ttlMillis = (ttl > 0 ? ttl : DEFAULT_TTL) * 1000L;
+		evictExpired();
+		while (entries.size() > this.maxEntries) {
+			Iterator<String> eldest = entries.keySet().iterator();
+			eldest.next();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	public synchronized boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/**
+	 * Returns the cached listing which can be used for revalidation, null if it is not cached or has expired.
+	 * The lookup is not counted, the response decides whether the cached page is used.
+	 * @param key value from {@link #key(String, String, Filter, int)}
+	 */
+	public synchronized Entry lookup(String key) {
+		Entry entry;
+		if (!isEnabled()) {
+			return null;
+		}
+		entry = entries.get(key);
+		if (entry != null && isExpired(entry)) {
+			entries.remove(key);
+			evictions.incrementAndGet();
+			entry = null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores the page received with a 200 response, which is counted as a miss.
+	 * The page is not cached when Github did not send any validator for it.
+	 */
+	public synchronized void store(String key, String etag, String lastModified, PullRequestPage page, long size) {
+		if (!isEnabled()) {
+			return;
+		}
+		misses.incrementAndGet();
+		if (etag == null && lastModified == null) {
+			return;
+		}
+		entries.put(key, new Entry(etag, lastModified, page, size));
+	}
+
+	/**
+	 * Records a 304 response for the entry, a hit, and returns the cached page
+	 */
+	public PullRequestPage revalidated(Entry entry) {
+		hits.incrementAndGet();
+		notModified.incrementAndGet();
+		bytesSaved.addAndGet(entry.size);
+		entry.validatedAt = System.currentTimeMillis();
+		return entry.page;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	private boolean isExpired(Entry entry) {
+		return System.currentTimeMillis() - entry.validatedAt > ttlMillis;
+	}
+
+	private void evictExpired() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (isExpired(iterator.next())) {
+				iterator.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getNotModified() {
+		return notModified.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Number of response bytes which were not downloaded again because of a 304 response
+	 */
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	@Override
+	public String toString() {
+		return "hits " + getHits() + ", misses " + getMisses() + ", not modified (304) " + getNotModified();
+	}
+
+	/**
+	 * Cached page along with the validators received from Github
+	 */
+	public static class Entry {
+		private final String etag;
+		private final String lastModified;
+		private final PullRequestPage page;
+		private final long size;
+		private volatile long validatedAt;
+
+		Entry(String etag, String lastModified, PullRequestPage page, long size) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.page = page;
+			this.size = size;
+			this.validatedAt = System.currentTimeMillis();
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public PullRequestPage getPage() {
+			return page;
+		}
+	}
+
+}
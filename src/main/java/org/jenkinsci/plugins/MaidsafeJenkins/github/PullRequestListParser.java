@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Streaming parser for the Pull Request listing.
+ * The JSON is read token by token and only head.ref, head.sha, head.repo.ssh_url, base.ref, html_url, title and
+ * the names of the labels are picked out of each Pull Request into a {@link PullRequest}. The rest of the response
+ * (user, repo, _links, etc.) is skipped without being materialized.
+ */
+public class PullRequestListParser implements ContentHandler {
+	private static final String HEAD_REF = "head.ref";
+	private static final String HEAD_SHA = "head.sha";
+	private static final String HEAD_SSH_URL = "head.repo.ssh_url";
+	private static final String BASE_REF = "base.ref";
+	private static final String HTML_URL = "html_url";
+	private static final String TITLE = "title";
+	private static final String LABEL_NAME = "labels.name";
+	private static final int MAX_FIELD_DEPTH = 3;
+
+	private final List<PullRequest> pullRequests = new ArrayList<PullRequest>();
+	private final List<String> keys = new ArrayList<String>();
+	private int objectDepth;
+	private String headRef;
+	private String headSha;
+	private String headSshUrl;
+	private String baseRef;
+	private String htmlUrl;
+	private String title;
+	private final List<String> labels = new ArrayList<String>();
+
+	/**
+	 * Parses the Pull Request listing
+	 * @param reader listing received from the Pull Request API
+	 * @return Pull Requests in the order of the listing
+	 */
+	public static List<PullRequest> parse(Reader reader) throws IOException, ParseException {
+		PullRequestListParser handler = new PullRequestListParser();
+		new JSONParser().parse(reader, handler);
+		return handler.pullRequests;
+	}
+
+	public void startJSON() {
+	}
+
+	public void endJSON() {
+	}
+
+	public boolean startObject() {
+		objectDepth++;
+		if (objectDepth == 1) {
+			headRef = headSha = headSshUrl = baseRef = htmlUrl = title = null;
+			labels.clear();
+		}
+		return true;
+	}
+
+	public boolean endObject() {
+		if (objectDepth == 1) {
+			pullRequests.add(new PullRequest(headRef, headSha, headSshUrl, baseRef, htmlUrl, title, labels));
+		}
+		objectDepth--;
+		return true;
+	}
+
+	public boolean startObjectEntry(String key) {
+		keys.add(key);
+		return true;
+	}
+
+	public boolean endObjectEntry() {
+		keys.remove(keys.size() - 1);
+		return true;
+	}
+
+	public boolean startArray() {
+		return true;
+	}
+
+	public boolean endArray() {
+		return true;
+	}
+
+	public boolean primitive(Object value) {
+		String field;
+		if (value == null || keys.isEmpty() || keys.size() > MAX_FIELD_DEPTH || keys.size() != objectDepth) {
+			return true; // values nested deeper than the projected fields are skipped
+		}
+		field = currentField();
+		if (HEAD_REF.equals(field)) {
+			headRef = value.toString();
+		} else if (HEAD_SHA.equals(field)) {
+			headSha = value.toString();
+		} else if (HEAD_SSH_URL.equals(field)) {
+			headSshUrl = value.toString();
+		} else if (BASE_REF.equals(field)) {
+			baseRef = value.toString();
+		} else if (HTML_URL.equals(field)) {
+			htmlUrl = value.toString();
+		} else if (TITLE.equals(field)) {
+			title = value.toString();
+		} else if (LABEL_NAME.equals(field)) {
+			labels.add(value.toString()); // name of an object of the labels array
+		}
+		return true;
+	}
+
+	private String currentField() {
+		StringBuilder field = new StringBuilder(keys.get(0));
+		for (int i = 1; i < keys.size(); i++) {
+			field.append('.').append(keys.get(i));
+		}
+		return field.toString();
+	}
+
+}
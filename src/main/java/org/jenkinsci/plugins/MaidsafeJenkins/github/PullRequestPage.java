@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.util.List;
+
+/**
+ * A single page of the Pull Request listing along with the URL of the next page.
+ * nextPage is null for the last page.
+ */
+public class PullRequestPage {
+	private final List<PullRequest> pullRequests;
+	private final String nextPage;
+
+	public PullRequestPage(List<PullRequest> pullRequests, String nextPage) {
+		this.pullRequests = pullRequests;
+		this.nextPage = nextPage;
+	}
+
+	public List<PullRequest> getPullRequests() {
+		return pullRequests;
+	}
+
+	public String getNextPage() {
+		return nextPage;
+	}
+
+	/**
+	 * Extracts the rel="next" URL from the Link header sent by Github
+	 * eg, &lt;https://api.github.com/repositories/1/pulls?page=2&gt;; rel="next", &lt;...&gt;; rel="last"
+	 * @param linkHeader value of the Link header, can be null
+	 * @return URL of the next page, null if there is no next page
+	 */
+	public static String parseNextPage(String linkHeader) {
+		int urlStart;
+		int urlEnd;
+		if (linkHeader == null) {
+			return null;
+		}
+		for (String link : linkHeader.split(",")) {
+			urlStart = link.indexOf('<');
+			urlEnd = link.indexOf('>', urlStart + 1);
+			if (urlStart < 0 || urlEnd < 0) {
+				continue;
+			}
+			for (String param : link.substring(urlEnd + 1).split(";")) {
+				if (param.trim().replace(" ", "").equalsIgnoreCase("rel=\"next\"")) {
+					return link.substring(urlStart + 1, urlEnd).trim();
+				}
+			}
+		}
+		return null;
+	}
+
+}
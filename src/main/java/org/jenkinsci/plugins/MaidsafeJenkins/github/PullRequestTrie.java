@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix trie of the Pull Requests of all the repositories, keyed by the normalised head ref (lower case,
+ * - replaced by _). The Pull Requests of every repository whose head ref starts with a key are found by walking
+ * the key once and collecting the subtree below it, whatever the number of repositories and Pull Requests.
+ * <p>
+ * The trie answers the case insensitive prefix match; the case sensitive match filters these candidates with
+ * {@link #startsWith(String, String, boolean)}, and the other matchers with their own criteria.
+ * Not thread safe, the {@link PullRequestIndex} synchronizes the access.
+ */
+public class PullRequestTrie {
+	private final Node root = new Node();
+
+	/**
+	 * Compares the ref with the prefix as if - was replaced by _ in both, without allocating
+	 */
+	public static boolean startsWith(String ref, String prefix, boolean ignoreCase) {
+		if (ref == null || prefix == null || ref.length() < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (normalise(ref.charAt(i), ignoreCase) != normalise(prefix.charAt(i), ignoreCase)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static char normalise(char c, boolean ignoreCase) {
+		if (c == '-') {
+			return '_';
+		}
+		return ignoreCase ? Character.toLowerCase(c) : c;
+	}
+
+	/**
+	 * @param repoKey repository of the Pull Request, see {@link PullRequestIndex#key(String, String)}
+	 */
+	public void put(String repoKey, PullRequest pullRequest) {
+		Node node = root;
+		Node child;
+		String ref = pullRequest.getHeadRef();
+		Map<String, PullRequest> pullRequests;
+		node.size++;
+		for (int i = 0; i < ref.length(); i++) {
+			child = node.child(normalise(ref.charAt(i), true), true);
+			child.size++;
+			node = child;
+		}
+		if (node.pullRequests == null) {
+			node.pullRequests = new HashMap<String, Map<String, PullRequest>>();
+		}
+		pullRequests = node.pullRequests.get(repoKey);
+		if (pullRequests == null) {
+			pullRequests = new LinkedHashMap<String, PullRequest>();
+			node.pullRequests.put(repoKey, pullRequests);
+		}
+		pullRequests.put(pullRequest.getHtmlUrl(), pullRequest);
+	}
+
+	/**
+	 * Removes the Pull Request previously put for the repository, the emptied branches of the trie are pruned
+	 */
+	public void remove(String repoKey, PullRequest pullRequest) {
+		Node node = root;
+		String ref = pullRequest.getHeadRef();
+		Map<String, PullRequest> pullRequests;
+		List<Node> path = new ArrayList<Node>();
+		path.add(node);
+		for (int i = 0; i < ref.length() && node != null; i++) {
+			node = node.child(normalise(ref.charAt(i), true), false);
+			path.add(node);
+		}
+		pullRequests = node == null || node.pullRequests == null ? null : node.pullRequests.get(repoKey);
+		if (pullRequests == null || pullRequests.remove(pullRequest.getHtmlUrl()) == null) {
+			return;
+		}
+		if (pullRequests.isEmpty()) {
+			node.pullRequests.remove(repoKey);
+		}
+		for (int i = path.size() - 1; i >= 0; i--) {
+			path.get(i).size--;
+			if (i > 0 && path.get(i).size == 0) {
+				path.get(i - 1).children.remove(normalise(ref.charAt(i - 1), true));
+			}
+		}
+	}
+
+	/**
+	 * Finds the Pull Requests whose head ref starts with the key, grouped by repository
+	 * @param ignoreCase false to match the case of the key as well
+	 * @return Pull Requests keyed by the repository, the repositories without a match are not included
+	 */
+	public Map<String, List<PullRequest>> find(String key, boolean ignoreCase) {
+		Node node = root;
+		Map<String, List<PullRequest>> matches = new HashMap<String, List<PullRequest>>();
+		for (int i = 0; i < key.length() && node != null; i++) {
+			node = node.child(normalise(key.charAt(i), true), false);
+		}
+		if (node != null) {
+			collect(node, key, ignoreCase, matches);
+		}
+		return matches;
+	}
+
+	private void collect(Node node, String key, boolean ignoreCase, Map<String, List<PullRequest>> matches) {
+		List<PullRequest> repoMatches;
+		if (node.pullRequests != null) {
+			for (Map.Entry<String, Map<String, PullRequest>> repo : node.pullRequests.entrySet()) {
+				for (PullRequest pullRequest : repo.getValue().values()) {
+					if (!ignoreCase && !startsWith(pullRequest.getHeadRef(), key, false)) {
+						continue;
+					}
+					repoMatches = matches.get(repo.getKey());
+					if (repoMatches == null) {
+						repoMatches = new ArrayList<PullRequest>();
+						matches.put(repo.getKey(), repoMatches);
+					}
+					repoMatches.add(pullRequest);
+				}
+			}
+		}
+		if (node.children != null) {
+			for (Node child : node.children.values()) {
+				collect(child, key, ignoreCase, matches);
+			}
+		}
+	}
+
+	public int size() {
+		return root.size;
+	}
+
+	private static class Node {
+		private Map<Character, Node> children;
+		private Map<String, Map<String, PullRequest>> pullRequests;
+		private int size; // Pull Requests in the subtree
+
+		Node child(char c, boolean create) {
+			Node child = children == null ? null : children.get(c);
+			if (child == null && create) {
+				if (children == null) {
+					children = new HashMap<Character, Node>();
+				}
+				child = new Node();
+				children.put(c, child);
+			}
+			return child;
+		}
+	}
+
+}
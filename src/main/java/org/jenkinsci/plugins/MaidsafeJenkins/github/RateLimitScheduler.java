@@ -0,0 +1,248 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Schedules the Github API requests against the rate limit of the access token.
+ * <p>
+ * The remaining quota and the reset time of every token are tracked from the X-RateLimit-* headers of the
+ * responses. Bursts are smoothed with a token bucket. When the quota is exhausted the callers are parked until
+ * the reset time instead of failing with 403. The last {@link #LISTING_RESERVE} requests of the quota are kept
+ * for the commit status updates, and waiting status updates go ahead of the waiting listing fetches.
+ * Only the core quota is tracked; the search and GraphQL requests have their own quota, they are not parked for
+ * the core one nor counted against it, only smoothed by the token bucket.
+ */
+public class RateLimitScheduler {
+	public static final int DEFAULT_REQUESTS_PER_SECOND = 10;
+	public static final int DEFAULT_BURST = 20;
+	private static final int LISTING_RESERVE = 50;
+	private static final String ANONYMOUS = "anonymous";
+
+	private static final RateLimitScheduler INSTANCE = new RateLimitScheduler();
+
+	private final Map<String, TokenState> states = new LinkedHashMap<String, TokenState>();
+	private volatile int requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+	private volatile int burst = DEFAULT_BURST;
+
+	public static enum Priority {
+		STATUS, LISTING
+	}
+
+	private RateLimitScheduler() {
+	}
+
+	public static RateLimitScheduler get() {
+		return INSTANCE;
+	}
+
+	public void configure(int requestsPerSecond, int burst) {
+		this.requestsPerSecond = requestsPerSecond > 0 ? requestsPerSecond : DEFAULT_REQUESTS_PER_SECOND;
+		this.burst = burst > 0 ? burst : DEFAULT_BURST;
+	}
+
+	private TokenState getState(String accessToken) {
+		String key = accessToken == null || accessToken.isEmpty() ? ANONYMOUS : accessToken;
+		synchronized (states) {
+			TokenState state = states.get(key);
+			if (state == null) {
+				state = new TokenState(key, burst);
+				states.put(key, state);
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * Blocks until a request can be sent with the token
+	 * @throws InterruptedException if the caller is interrupted while parked
+	 */
+	public void acquire(String accessToken, Priority priority, HttpUriRequest request) throws InterruptedException {
+		getState(accessToken).acquire(priority, isCoreRequest(request), requestsPerSecond, burst);
+	}
+
+	/**
+	 * @return false for the search and GraphQL requests, which do not use the core quota
+	 */
+	static boolean isCoreRequest(HttpUriRequest request) {
+		String path = request.getURI().getPath();
+		return path == null || !(path.startsWith("/search/") || path.equals("/graphql"));
+	}
+
+	/**
+	 * Updates the quota of the token from the headers of the response
+	 * @return true if the request was rejected because the quota was exhausted
+	 */
+	public boolean update(String accessToken, HttpResponse response) {
+		return getState(accessToken).update(response);
+	}
+
+	/**
+	 * Current state of every token which has been used since the start of Jenkins
+	 */
+	public List<TokenState> getStates() {
+		synchronized (states) {
+			return new ArrayList<TokenState>(states.values());
+		}
+	}
+
+	/**
+	 * Rate limit and token bucket of one access token
+	 */
+	public static class TokenState {
+		private final String token;
+		private int limit = -1;
+		private int remaining = -1;
+		private long resetAt;
+		private double bucket;
+		private long lastRefill;
+		private int waitingStatus;
+		private int waitingListing;
+		private long parkedCount;
+
+		TokenState(String token, int burst) {
+			this.token = token;
+			this.bucket = burst;
+			this.lastRefill = System.currentTimeMillis();
+		}
+
+		synchronized void acquire(Priority priority, boolean core, int requestsPerSecond, int burst)
+				throws InterruptedException {
+			long waitTime;
+			if (priority == Priority.STATUS) {
+				waitingStatus++;
+			} else {
+				waitingListing++;
+			}
+			try {
+				while (true) {
+					refill(requestsPerSecond, burst);
+					waitTime = getWaitTime(priority, core, requestsPerSecond);
+					if (waitTime <= 0) {
+						bucket--;
+						if (core && remaining > 0) {
+							remaining--;
+						}
+						return;
+					}
+					parkedCount++;
+					wait(waitTime);
+				}
+			} finally {
+				if (priority == Priority.STATUS) {
+					waitingStatus--;
+				} else {
+					waitingListing--;
+				}
+				notifyAll();
+			}
+		}
+
+		private long getWaitTime(Priority priority, boolean core, int requestsPerSecond) {
+			long now = System.currentTimeMillis();
+			int reserve = priority == Priority.STATUS ? 0 : LISTING_RESERVE;
+			if (core && remaining >= 0 && remaining <= reserve && now < resetAt) {
+				return resetAt - now;
+			}
+			if (core && now >= resetAt && remaining >= 0 && remaining <= reserve) {
+				remaining = -1; // quota has been reset, the actual value is known from the next response
+			}
+			if (priority == Priority.LISTING && waitingStatus > 0) {
+				return Math.max(1, 1000 / requestsPerSecond);
+			}
+			if (bucket < 1) {
+				return (long) Math.ceil((1 - bucket) * 1000 / requestsPerSecond);
+			}
+			return 0;
+		}
+
+		private void refill(int requestsPerSecond, int burst) {
+			long now = System.currentTimeMillis();
+			bucket = Math.min(burst, bucket + (now - lastRefill) * requestsPerSecond / 1000.0);
+			lastRefill = now;
+		}
+
+		synchronized boolean update(HttpResponse response) {
+			Header resource = response.getFirstHeader("X-RateLimit-Resource");
+			if (resource != null && !"core".equals(resource.getValue())) {
+				return false; // search and graphql have their own quota
+			}
+			int newRemaining = getIntHeader(response, "X-RateLimit-Remaining");
+			int newLimit = getIntHeader(response, "X-RateLimit-Limit");
+			int reset = getIntHeader(response, "X-RateLimit-Reset");
+			if (newLimit >= 0) {
+				limit = newLimit;
+			}
+			if (newRemaining >= 0) {
+				remaining = newRemaining;
+			}
+			if (reset >= 0) {
+				resetAt = reset * 1000L;
+			}
+			notifyAll();
+			return newRemaining == 0 && response.getStatusLine().getStatusCode() == HttpStatus.SC_FORBIDDEN;
+		}
+
+		private int getIntHeader(HttpResponse response, String name) {
+			Header header = response.getFirstHeader(name);
+			if (header == null) {
+				return -1;
+			}
+			try {
+				return Integer.parseInt(header.getValue().trim());
+			} catch (NumberFormatException ex) {
+				return -1;
+			}
+		}
+
+		/**
+		 * Token masked for display
+		 */
+		public String getName() {
+			if (ANONYMOUS.equals(token) || token.length() <= 4) {
+				return token;
+			}
+			return "****" + token.substring(token.length() - 4);
+		}
+
+		public synchronized int getLimit() {
+			return limit;
+		}
+
+		public synchronized int getRemaining() {
+			return remaining;
+		}
+
+		public synchronized Date getResetTime() {
+			return resetAt == 0 ? null : new Date(resetAt);
+		}
+
+		public synchronized int getBucket() {
+			return (int) bucket;
+		}
+
+		public synchronized int getWaitingStatus() {
+			return waitingStatus;
+		}
+
+		public synchronized int getWaitingListing() {
+			return waitingListing;
+		}
+
+		/**
+		 * Number of times a caller was parked for the quota or the token bucket
+		 */
+		public synchronized long getParkedCount() {
+			return parkedCount;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github.match;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestTrie;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Matches the Pull Requests whose branch name starts with the issue key, - and _ being equivalent.
+ * This is the default strategy.
+ */
+public class BranchPrefixMatcher extends PullRequestMatcher {
+	private final boolean ignoreCase;
+
+	@DataBoundConstructor
+	public BranchPrefixMatcher(boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+	}
+
+	public boolean getIgnoreCase() {
+		return ignoreCase;
+	}
+
+	@Override
+	public KeyMatcher forKey(final String key) {
+		return new KeyMatcher() {
+
+			@Override
+			public boolean matches(PullRequest pullRequest) {
+				return PullRequestTrie.startsWith(pullRequest.getHeadRef(), key, ignoreCase);
+			}
+
+			@Override
+			public String getHeadRefPrefix() {
+				return key;
+			}
+		};
+	}
+
+	@Extension
+	public static class DescriptorImpl extends Descriptor<PullRequestMatcher> {
+
+		@Override
+		public String getDisplayName() {
+			return "Branch name starts with the issue key";
+		}
+	}
+
+}
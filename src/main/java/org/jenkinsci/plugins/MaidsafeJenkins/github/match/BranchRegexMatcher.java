@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github.match;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Matches the Pull Requests whose whole branch name matches a regular expression, eg. feature/{key}-.*
+ * The {key} placeholders are replaced with the quoted issue key and the expression is compiled once per build.
+ */
+public class BranchRegexMatcher extends PullRequestMatcher {
+	public static final String KEY_PLACEHOLDER = "{key}";
+
+	private final String pattern;
+
+	@DataBoundConstructor
+	public BranchRegexMatcher(String pattern) {
+		this.pattern = pattern;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	@Override
+	public KeyMatcher forKey(String key) {
+		final Pattern compiled = compile(pattern, key);
+		return new KeyMatcher() {
+
+			@Override
+			public boolean matches(PullRequest pullRequest) {
+				return pullRequest.getHeadRef() != null && compiled.matcher(pullRequest.getHeadRef()).matches();
+			}
+		};
+	}
+
+	static Pattern compile(String pattern, String key) {
+		return Pattern.compile(pattern.replace(KEY_PLACEHOLDER, Pattern.quote(key)));
+	}
+
+	@Extension
+	public static class DescriptorImpl extends Descriptor<PullRequestMatcher> {
+
+		@Override
+		public String getDisplayName() {
+			return "Branch name matches a regular expression";
+		}
+
+		public FormValidation doCheckPattern(@QueryParameter String value) {
+			if (value.length() == 0) {
+				return FormValidation.error("Please set the regular expression");
+			}
+			try {
+				compile(value, "");
+			} catch (PatternSyntaxException ex) {
+				return FormValidation.error("Invalid regular expression :: " + ex.getDescription());
+			}
+			return FormValidation.ok();
+		}
+	}
+
+}
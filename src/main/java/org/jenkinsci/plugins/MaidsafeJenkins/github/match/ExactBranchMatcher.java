@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github.match;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Matches the Pull Requests whose branch name is the issue key
+ */
+public class ExactBranchMatcher extends PullRequestMatcher {
+	private final boolean ignoreCase;
+
+	@DataBoundConstructor
+	public ExactBranchMatcher(boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+	}
+
+	public boolean getIgnoreCase() {
+		return ignoreCase;
+	}
+
+	@Override
+	public KeyMatcher forKey(final String key) {
+		return new KeyMatcher() {
+
+			@Override
+			public boolean matches(PullRequest pullRequest) {
+				return ignoreCase ? key.equalsIgnoreCase(pullRequest.getHeadRef()) : key.equals(pullRequest.getHeadRef());
+			}
+
+			@Override
+			public String getHeadRefPrefix() {
+				return key;
+			}
+
+			@Override
+			public String getHeadBranch() {
+				return key;
+			}
+		};
+	}
+
+	@Extension
+	public static class DescriptorImpl extends Descriptor<PullRequestMatcher> {
+
+		@Override
+		public String getDisplayName() {
+			return "Branch name is the issue key";
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github.match;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Matches the Pull Requests carrying a label named as the issue key, ignoring the case.
+ * The candidates are found with a Github search of the label.
+ */
+public class LabelMatcher extends PullRequestMatcher {
+
+	@DataBoundConstructor
+	public LabelMatcher() {
+	}
+
+	@Override
+	public KeyMatcher forKey(final String key) {
+		final String qualifiers = "label:\"" + key.replace("\"", "") + "\"";
+		return new KeyMatcher() {
+
+			@Override
+			public boolean matches(PullRequest pullRequest) {
+				for (String label : pullRequest.getLabels()) {
+					if (label.equalsIgnoreCase(key)) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public String getSearchQualifiers() {
+				return qualifiers;
+			}
+		};
+	}
+
+	@Extension
+	public static class DescriptorImpl extends Descriptor<PullRequestMatcher> {
+
+		@Override
+		public String getDisplayName() {
+			return "Label named as the issue key";
+		}
+	}
+
+}
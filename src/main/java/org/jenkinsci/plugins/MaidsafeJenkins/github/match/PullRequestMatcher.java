@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github.match;
+
+import hudson.DescriptorExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+
+import jenkins.model.Jenkins;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+
+/**
+ * Strategy matching the Pull Requests of a build with the issue key, selected in the configuration of the job.
+ * <p>
+ * A matcher is compiled once for the key of the build, see {@link #forKey(String)}. The compiled
+ * {@link KeyMatcher} can narrow down the candidates before they are matched one by one: by a head ref prefix
+ * looked up in the {@link org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequestIndex}, and by the qualifiers of
+ * a single Github search across the organization, so that the complete Pull Request listings of the repositories
+ * are not downloaded.
+ */
+public abstract class PullRequestMatcher extends AbstractDescribableImpl<PullRequestMatcher> implements ExtensionPoint {
+
+	/**
+	 * Compiles the matcher for the issue key of a build
+	 */
+	public abstract KeyMatcher forKey(String key);
+
+	public static DescriptorExtensionList<PullRequestMatcher, Descriptor<PullRequestMatcher>> all() {
+		return Jenkins.getInstance().getDescriptorList(PullRequestMatcher.class);
+	}
+
+	/**
+	 * Matcher compiled for one issue key, shared by the threads fetching the Pull Requests
+	 */
+	public static abstract class KeyMatcher {
+
+		public abstract boolean matches(PullRequest pullRequest);
+
+		/**
+		 * Prefix of the head refs of the candidates, compared ignoring the case and with - and _ as equal
+		 * @return empty string if all the Pull Requests are candidates
+		 */
+		public String getHeadRefPrefix() {
+			return "";
+		}
+
+		/**
+		 * Branch name the candidates must have, which can be looked up without fetching the Pull Request lists
+		 * @return null if the matcher does not require an exact branch name
+		 */
+		public String getHeadBranch() {
+			return null;
+		}
+
+		/**
+		 * Qualifiers of the Github issue search returning the candidates, eg. label:"ISSUE-1".
+		 * The candidates found by the search are still matched with {@link #matches(PullRequest)}.
+		 * @return null if the candidates can not be searched, the Pull Request listings are fetched instead
+		 */
+		public String getSearchQualifiers() {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github.match;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.github.PullRequest;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Matches the Pull Requests whose title contains the issue key, ignoring the case.
+ * The candidates are found with a Github search of the titles.
+ */
+public class TitleMatcher extends PullRequestMatcher {
+
+	@DataBoundConstructor
+	public TitleMatcher() {
+	}
+
+	@Override
+	public KeyMatcher forKey(String key) {
+		final String lowerCaseKey = key.toLowerCase();
+		final String qualifiers = "\"" + key.replace("\"", "") + "\" in:title";
+		return new KeyMatcher() {
+
+			@Override
+			public boolean matches(PullRequest pullRequest) {
+				return pullRequest.getTitle() != null && pullRequest.getTitle().toLowerCase().contains(lowerCaseKey);
+			}
+
+			@Override
+			public String getSearchQualifiers() {
+				return qualifiers;
+			}
+		};
+	}
+
+	@Extension
+	public static class DescriptorImpl extends Descriptor<PullRequestMatcher> {
+
+		@Override
+		public String getDisplayName() {
+			return "Title contains the issue key";
+		}
+	}
+
+}
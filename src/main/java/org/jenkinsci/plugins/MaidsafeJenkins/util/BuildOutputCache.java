@@ -0,0 +1,280 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.FilePath.TarCompression;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.git.GitDir;
+
+/**
+ * Agent local cache of the build outputs of the modules, addressed by the content which was built.
+ * <p>
+ * The key of an entry is the hash of the module path, the sha of the module HEAD and the build commands, so a
+ * module is not built again when the same commit has already been built with the same commands on the agent
+ * (eg, the modules without a Pull Request, which are on the base branch in most of the builds).
+ * The outputs matching a glob are stored as a tar.gz per key. Entries are evicted in LRU order (by their last
+ * access time) once the total size exceeds the limit.
+ */
+public class BuildOutputCache {
+	public static final int DEFAULT_MAX_SIZE = 10240; // MB
+	private static final String CACHE_DIR = "maidsafe-build-cache";
+	private static final String ENTRY_SUFFIX = ".tar.gz";
+	private static final Stats STATS = new Stats();
+	private static volatile long maxBytes = DEFAULT_MAX_SIZE * 1024L * 1024L;
+
+	private final FilePath cacheRoot;
+
+	public BuildOutputCache(FilePath cacheRoot) {
+		this.cacheRoot = cacheRoot;
+	}
+
+	/**
+	 * @return the cache of the node, null if the node is offline
+	 */
+	public static BuildOutputCache forNode(Node node) {
+		FilePath rootPath = node == null ? null : node.getRootPath();
+		return rootPath == null ? null : new BuildOutputCache(rootPath.child(CACHE_DIR));
+	}
+
+	/**
+	 * Sets the size limit of the cache on every agent. 0 or less resets the default.
+	 * @param maxSize size in MB
+	 */
+	public static void setMaxSize(int maxSize) {
+		maxBytes = (maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE) * 1024L * 1024L;
+	}
+
+	public static Stats getStats() {
+		return STATS;
+	}
+
+	/**
+	 * Resolves the HEAD sha of the module on the agent
+	 * @return null if the module is not a git repository or has no commit
+	 */
+	public static String getHead(FilePath moduleDir) throws IOException, InterruptedException {
+		return moduleDir.act(new ResolveHead());
+	}
+
+	/**
+	 * @param modulePath path of the module relative to the workspace, so that the workspaces share the entries
+	 * @param headSha HEAD of the module
+	 * @param dependencyHeads HEAD of every module the module depends on, transitively, keyed by the module
+	 * @param commands build commands of the module
+	 */
+	public static String key(String modulePath, String headSha, SortedMap<String, String> dependencyHeads,
+			List<String> commands) {
+		MessageDigest digest;
+		StringBuilder key = new StringBuilder();
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		try {
+			digest.update(modulePath.getBytes("UTF-8"));
+			digest.update((byte) 0);
+			digest.update(headSha.getBytes("UTF-8"));
+			for (Map.Entry<String, String> dependency : dependencyHeads.entrySet()) {
+				digest.update((byte) 0);
+				digest.update(dependency.getKey().getBytes("UTF-8"));
+				digest.update((byte) '=');
+				digest.update(dependency.getValue().getBytes("UTF-8"));
+			}
+			for (String command : commands) {
+				digest.update((byte) 0);
+				digest.update(command.getBytes("UTF-8"));
+			}
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Extracts the cached outputs into the module directory
+	 * @return false if the key is not cached
+	 */
+	public boolean restore(String key, FilePath moduleDir) throws IOException, InterruptedException {
+		long size = cacheRoot.act(new RestoreEntry(key, moduleDir.getRemote()));
+		if (size < 0) {
+			STATS.misses.incrementAndGet();
+			return false;
+		}
+		STATS.hits.incrementAndGet();
+		STATS.bytesRestored.addAndGet(size);
+		return true;
+	}
+
+	/**
+	 * Stores the outputs of the module matching the glob, then evicts the least recently used entries
+	 * @param includes Ant style glob relative to the module directory, eg build/**
+	 */
+	public void store(String key, FilePath moduleDir, String includes) throws IOException, InterruptedException {
+		int evicted = cacheRoot.act(new StoreEntry(key, moduleDir.getRemote(), includes, maxBytes));
+		STATS.stores.incrementAndGet();
+		STATS.evictions.addAndGet(evicted);
+	}
+
+	/**
+	 * Counters of all the caches, since the start of Jenkins
+	 */
+	public static class Stats {
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+		private final AtomicLong stores = new AtomicLong();
+		private final AtomicLong evictions = new AtomicLong();
+		private final AtomicLong bytesRestored = new AtomicLong();
+
+		public long getHits() {
+			return hits.get();
+		}
+
+		public long getMisses() {
+			return misses.get();
+		}
+
+		/**
+		 * Hits in percent of the lookups
+		 */
+		public long getHitRate() {
+			long lookups = getHits() + getMisses();
+			return lookups == 0 ? 0 : getHits() * 100 / lookups;
+		}
+
+		public long getStores() {
+			return stores.get();
+		}
+
+		public long getEvictions() {
+			return evictions.get();
+		}
+
+		public long getBytesRestored() {
+			return bytesRestored.get();
+		}
+
+		public long getMaxSize() {
+			return maxBytes / (1024L * 1024L);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class ResolveHead implements FileCallable<String> {
+
+		public String invoke(File dir, VirtualChannel channel) throws IOException, InterruptedException {
+			GitDir gitDir = GitDir.forWorkTree(dir);
+			return gitDir == null ? null : gitDir.resolveHead();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class RestoreEntry implements FileCallable<Long> {
+		private final String key;
+		private final String moduleDir;
+
+		RestoreEntry(String key, String moduleDir) {
+			this.key = key;
+			this.moduleDir = moduleDir;
+		}
+
+		public Long invoke(File cacheDir, VirtualChannel channel) throws IOException, InterruptedException {
+			File entry = new File(cacheDir, key + ENTRY_SUFFIX);
+			if (!entry.isFile()) {
+				return -1L;
+			}
+			entry.setLastModified(System.currentTimeMillis()); // LRU order
+			new FilePath(entry).untar(new FilePath(new File(moduleDir)), TarCompression.GZIP);
+			return entry.length();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class StoreEntry implements FileCallable<Integer> {
+		private final String key;
+		private final String moduleDir;
+		private final String includes;
+		private final long sizeLimit;
+
+		StoreEntry(String key, String moduleDir, String includes, long sizeLimit) {
+			this.key = key;
+			this.moduleDir = moduleDir;
+			this.includes = includes;
+			this.sizeLimit = sizeLimit;
+		}
+
+		public Integer invoke(File cacheDir, VirtualChannel channel) throws IOException, InterruptedException {
+			OutputStream out;
+			File entry = new File(cacheDir, key + ENTRY_SUFFIX);
+			File temp;
+			if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+				throw new IOException("Build cache could not be created in " + cacheDir);
+			}
+			// written to a temporary file and renamed, so a concurrent build never extracts a partial entry
+			temp = File.createTempFile(key, ".tmp", cacheDir);
+			out = new GZIPOutputStream(new FileOutputStream(temp));
+			try {
+				new FilePath(new File(moduleDir)).tar(out, includes);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(entry)) {
+				entry.delete();
+				if (!temp.renameTo(entry)) {
+					temp.delete();
+					throw new IOException("Build cache entry could not be stored :: " + entry);
+				}
+			}
+			return evict(cacheDir);
+		}
+
+		private int evict(File cacheDir) {
+			long size;
+			int evicted = 0;
+			long totalSize = 0;
+			File[] entries = cacheDir.listFiles();
+			if (entries == null) {
+				return 0;
+			}
+			for (File file : entries) {
+				totalSize += file.length();
+			}
+			Arrays.sort(entries, new Comparator<File>() {
+				public int compare(File f1, File f2) {
+					return f1.lastModified() < f2.lastModified() ? -1 : (f1.lastModified() == f2.lastModified() ? 0 : 1);
+				}
+			});
+			for (File file : entries) {
+				if (totalSize <= sizeLimit) {
+					break;
+				}
+				size = file.length();
+				if (file.getName().endsWith(ENTRY_SUFFIX) && file.delete()) {
+					totalSize -= size;
+					evicted++;
+				}
+			}
+			return evicted;
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * OutputStream decoding the bytes written to it into lines, which are passed to a {@link LineCallback} as soon
+ * as they are complete. Nothing but the current line is held, lines longer than the maximum length are passed
+ * in parts. The line terminators (\n and \r\n) are not included.
+ * The charset must be ASCII compatible (eg, UTF-8 or ISO-8859-1), as the lines are split on the \n byte.
+ */
+public class LineCallbackOutputStream extends OutputStream {
+	public static final int DEFAULT_MAX_LINE_LENGTH = 8192;
+	private final LineCallback callback;
+	private final Charset charset;
+	private final byte[] line;
+	private int length;
+
+	/**
+	 * Receives the lines decoded from the output
+	 */
+	public static interface LineCallback {
+		void onLine(String line);
+	}
+
+	public LineCallbackOutputStream(LineCallback callback, Charset charset) {
+		this(callback, charset, DEFAULT_MAX_LINE_LENGTH);
+	}
+
+	public LineCallbackOutputStream(LineCallback callback, Charset charset, int maxLineLength) {
+		this.callback = callback;
+		this.charset = charset;
+		this.line = new byte[maxLineLength];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (b == '\n') {
+			eol();
+			return;
+		}
+		if (length == line.length) {
+			eol();
+		}
+		line[length++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		int chunk;
+		int end = off + len;
+		while (off < end) {
+			chunk = 0;
+			while (off + chunk < end && b[off + chunk] != '\n') {
+				chunk++;
+			}
+			append(b, off, chunk);
+			off += chunk;
+			if (off < end) { // at \n
+				eol();
+				off++;
+			}
+		}
+	}
+
+	private void append(byte[] b, int off, int len) {
+		int chunk;
+		while (len > 0) {
+			if (length == line.length) {
+				eol();
+			}
+			chunk = Math.min(len, line.length - length);
+			System.arraycopy(b, off, line, length, chunk);
+			length += chunk;
+			off += chunk;
+			len -= chunk;
+		}
+	}
+
+	private void eol() {
+		int end = length;
+		if (end > 0 && line[end - 1] == '\r') {
+			end--;
+		}
+		callback.onLine(new String(line, 0, end, charset));
+		length = 0;
+	}
+
+	/**
+	 * Passes the last line if it was not terminated
+	 */
+	@Override
+	public void close() throws IOException {
+		if (length > 0) {
+			eol();
+		}
+	}
+
+}
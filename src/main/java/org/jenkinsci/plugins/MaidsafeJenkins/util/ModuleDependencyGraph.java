@@ -0,0 +1,127 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Dependencies between the submodules, as declared in the job configuration.
+ * One module per line, followed by the modules it depends on, eg
+ * <pre>
+ * drive: common, private
+ * vault: common passport
+ * </pre>
+ * The module names are not case sensitive. Blank lines and lines starting with # are ignored.
+ */
+public class ModuleDependencyGraph {
+	private final Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+	private final Map<String, Set<String>> dependents = new LinkedHashMap<String, Set<String>>();
+
+	public static ModuleDependencyGraph parse(String declaration) {
+		int separator;
+		String module;
+		ModuleDependencyGraph graph = new ModuleDependencyGraph();
+		if (declaration == null) {
+			return graph;
+		}
+		for (String line : declaration.split("\\r?\\n")) {
+			line = line.trim();
+			separator = line.indexOf(':');
+			if (line.isEmpty() || line.startsWith("#") || separator <= 0) {
+				continue;
+			}
+			module = line.substring(0, separator).trim().toLowerCase();
+			for (String dependency : line.substring(separator + 1).split("[\\s,]+")) {
+				if (!dependency.isEmpty()) {
+					graph.addDependency(module, dependency.toLowerCase());
+				}
+			}
+		}
+		return graph;
+	}
+
+	public void addDependency(String module, String dependency) {
+		getOrCreate(dependencies, module).add(dependency);
+		getOrCreate(dependents, dependency).add(module);
+	}
+
+	private static Set<String> getOrCreate(Map<String, Set<String>> edges, String module) {
+		Set<String> modules = edges.get(module);
+		if (modules == null) {
+			modules = new LinkedHashSet<String>();
+			edges.put(module, modules);
+		}
+		return modules;
+	}
+
+	/**
+	 * Modules the module directly depends on
+	 */
+	public Set<String> getDependencies(String module) {
+		Set<String> modules = dependencies.get(module.toLowerCase());
+		return modules == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(modules);
+	}
+
+	/**
+	 * Modules the module depends on, directly or transitively, sorted by name
+	 */
+	public SortedSet<String> getTransitiveDependencies(String module) {
+		Set<String> moduleDependencies;
+		SortedSet<String> transitive = new TreeSet<String>();
+		List<String> queue = new ArrayList<String>();
+		queue.add(module.toLowerCase());
+		for (int i = 0; i < queue.size(); i++) {
+			moduleDependencies = dependencies.get(queue.get(i));
+			if (moduleDependencies == null) {
+				continue;
+			}
+			for (String dependency : moduleDependencies) {
+				if (!dependency.equals(module.toLowerCase()) && transitive.add(dependency)) {
+					queue.add(dependency);
+				}
+			}
+		}
+		return transitive;
+	}
+
+	public boolean isEmpty() {
+		return dependencies.isEmpty();
+	}
+
+	/**
+	 * Returns the changed modules along with every module depending on them, directly or transitively.
+	 * The changed modules come first, in their order.
+	 */
+	public List<String> getAffectedModules(Collection<String> changedModules) {
+		String module;
+		Set<String> dependentModules;
+		Set<String> affected = new LinkedHashSet<String>();
+		List<String> queue = new ArrayList<String>();
+		for (String changed : changedModules) {
+			if (affected.add(changed.toLowerCase())) {
+				queue.add(changed.toLowerCase());
+			}
+		}
+		for (int i = 0; i < queue.size(); i++) {
+			module = queue.get(i);
+			dependentModules = dependents.get(module);
+			if (dependentModules == null) {
+				continue;
+			}
+			for (String dependent : dependentModules) {
+				if (affected.add(dependent)) {
+					queue.add(dependent);
+				}
+			}
+		}
+		return new ArrayList<String>(affected);
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * OutputStream holding only the last capacity bytes written to it.
+ * Used to capture the output of commands whose size is not known upfront, the memory used is bounded
+ * however large the output is.
+ */
+public class RingBufferOutputStream extends OutputStream {
+	private final byte[] buffer;
+	private int start;
+	private int length;
+	private long totalBytes;
+
+	public RingBufferOutputStream(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive :: " + capacity);
+		}
+		buffer = new byte[capacity];
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		buffer[(start + length) % buffer.length] = (byte) b;
+		if (length < buffer.length) {
+			length++;
+		} else {
+			start = (start + 1) % buffer.length;
+		}
+		totalBytes++;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		int chunk;
+		int end;
+		totalBytes += len;
+		if (len >= buffer.length) {
+			// only the tail of the chunk fits
+			System.arraycopy(b, off + len - buffer.length, buffer, 0, buffer.length);
+			start = 0;
+			length = buffer.length;
+			return;
+		}
+		end = (start + length) % buffer.length;
+		chunk = Math.min(len, buffer.length - end);
+		System.arraycopy(b, off, buffer, end, chunk);
+		System.arraycopy(b, off + chunk, buffer, 0, len - chunk);
+		if (length + len > buffer.length) {
+			start = (start + length + len - buffer.length) % buffer.length;
+			length = buffer.length;
+		} else {
+			length += len;
+		}
+	}
+
+	/**
+	 * Number of bytes written, including the ones which have been dropped
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public synchronized boolean isTruncated() {
+		return totalBytes > length;
+	}
+
+	public synchronized byte[] toByteArray() {
+		byte[] bytes = new byte[length];
+		int chunk = Math.min(length, buffer.length - start);
+		System.arraycopy(buffer, start, bytes, 0, chunk);
+		System.arraycopy(buffer, 0, bytes, chunk, length - chunk);
+		return bytes;
+	}
+
+	/**
+	 * Decodes the retained bytes. The first line can be partial when the output was truncated.
+	 */
+	public String toString(Charset charset) {
+		return new String(toByteArray(), charset);
+	}
+
+	/**
+	 * Writes the retained bytes, preceded by a note when the earlier output was dropped
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		byte[] bytes = toByteArray();
+		long dropped = getTotalBytes() - bytes.length;
+		if (dropped > 0) {
+			out.write(("... " + dropped + " bytes of output omitted ...\n").getBytes("US-ASCII"));
+		}
+		out.write(bytes);
+	}
+
+	@Override
+	public String toString() {
+		return toString(Charset.defaultCharset());
+	}
+
+}
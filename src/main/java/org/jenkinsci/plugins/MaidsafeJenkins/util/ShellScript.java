@@ -8,16 +8,22 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Proc;
+import hudson.model.Computer;
 import hudson.tasks.Shell;
 import hudson.tasks.Shell.DescriptorImpl;
 import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jenkins.model.Jenkins;
 
+import org.jenkinsci.plugins.MaidsafeJenkins.util.LineCallbackOutputStream.LineCallback;
+
 /**
  *
  * @author krishnakumarp
@@ -27,14 +33,29 @@ public class ShellScript {
     private Launcher launcher;
     private PrintStream logger;
     private EnvVars env;
+    private Charset charset;
+    private String interpreter;
+    private boolean sessionMode;
+    private ShellSession session;
+    private final ReentrantLock sessionLock = new ReentrantLock();
            
     public ShellScript(FilePath tempPath, Launcher launcher, EnvVars envVars) {
         this.tempPath = tempPath;
         this.launcher = launcher;
         this.logger = launcher.getListener().getLogger();
         this.env = envVars;
+        Computer computer = Computer.currentComputer();
+        this.charset = computer == null || computer.getDefaultCharset() == null ? Charset.defaultCharset() 
+        		: computer.getDefaultCharset();
     }      
     
+    /**
+     * Charset of the node executing the commands, used to decode their output
+     */
+    public Charset getCharset() {
+    	return charset;
+    }
+    
     private String prepareCommands(List<String> cmds, boolean echoHack) {
     	String echoCmd = "echo \"+ %s\"\n";
     	StringBuilder builder = new StringBuilder();
@@ -51,24 +72,22 @@ public class ShellScript {
     	return execute(cmds, logger);
     }    
        
-    private int runShellCommands(List<String> cmds, OutputStream outputStream) throws Exception {    	
+    private int runShellCommands(List<String> cmds, OutputStream outputStream, OutputStream errorStream) throws Exception {    	
     	FilePath tempFile;
     	int result;
     	ArgumentListBuilder args = new ArgumentListBuilder();
     	tempFile = tempPath.createTextTempFile("script_" + tempPath.getBaseName() + new Date().getTime(), ".sh",
     			prepareCommands(cmds, false), !tempPath.isRemote());    	
-    	final Shell.DescriptorImpl desciptor = (DescriptorImpl) Jenkins.getInstance().getDescriptor(Shell.class);
-    	final String interpretor = desciptor.getShellOrDefault(tempPath.getChannel());
-    	args.add(interpretor);
+    	args.add(getInterpreter());
     	args.add("-xe");
     	args.add(tempFile.getRemote());    	
     	result = launcher.launch().cmds(args)
-    			.envs(env).stderr(logger).stdout(outputStream).pwd(tempPath).join();
+    			.envs(env).stderr(errorStream).stdout(outputStream).pwd(tempPath).join();
     	tempFile.delete();
     	return result;
     }
     
-    private int runWinBatchCommands(List<String> cmds, OutputStream outputStream) throws Exception {
+    private int runWinBatchCommands(List<String> cmds, OutputStream outputStream, OutputStream errorStream) throws Exception {
     	int status;
     	FilePath tempFile = tempPath.createTextTempFile("sricpt_"+ new Date().getTime(), ".bat", 
     			prepareCommands(cmds, true), !tempPath.isRemote());      
@@ -76,6 +95,9 @@ public class ShellScript {
         command.addTokenized("sh --login " + tempFile.getRemote());        
         Launcher.ProcStarter ps = launcher.new ProcStarter();
         ps = ps.cmds(command).stdout(outputStream);
+        if (errorStream != logger) {
+        	ps = ps.stderr(errorStream);
+        }
         ps = ps.pwd(tempPath).envs(env);
         Proc proc = launcher.launch(ps);                        
         status = proc.join();
@@ -84,10 +106,108 @@ public class ShellScript {
     }
     
     public int execute(List<String> cmds, OutputStream outputStream) throws Exception {  
+    	ShellSession currentSession;
     	if (outputStream == null) {
             outputStream = logger;
         }
-    	return launcher.isUnix() ? runShellCommands(cmds, outputStream) : runWinBatchCommands(cmds, outputStream);
+    	if (sessionLock.tryLock()) {
+    		try {
+    			currentSession = getSession();
+    			if (currentSession != null) {
+    				return currentSession.execute(cmds, outputStream);
+    			}
+    		} catch (IOException ex) {
+    			logger.println("Shell session has ended, falling back to script files :: " + ex.getMessage());
+    		} finally {
+    			sessionLock.unlock();
+    		}
+    	}
+    	return launcher.isUnix() ? runShellCommands(cmds, outputStream, logger) : runWinBatchCommands(cmds, outputStream, logger);
+    }
+    
+    /**
+     * Executes the commands in their own shell with separate streams for stdout and stderr, eg to capture the 
+     * complete log of a command. The shell session is not used as its stderr goes to the build log.
+     */
+    public int execute(List<String> cmds, OutputStream outputStream, OutputStream errorStream) throws Exception {
+    	if (errorStream == null) {
+    		return execute(cmds, outputStream);
+    	}
+    	return launcher.isUnix() ? runShellCommands(cmds, outputStream, errorStream) 
+    			: runWinBatchCommands(cmds, outputStream, errorStream);
+    }
+    
+    /**
+     * Runs the later commands in a single long lived shell on the node instead of a new shell and script file per
+     * execution. The shell is started on the first execution. Commands executed while the shell is busy with 
+     * another thread are run in their own shell, as before. Only supported on Unix nodes.
+     * The session must be ended with {@link #close()}.
+     */
+    public synchronized void startSession() {
+    	sessionMode = launcher.isUnix();
+    }
+    
+    /**
+     * @return the session, started if needed, null if the session mode is off 
+     */
+    private synchronized ShellSession getSession() throws IOException, InterruptedException {
+    	if (!sessionMode) {
+    		return null;
+    	}
+    	if (session != null && !session.isAlive()) {
+    		session.close();
+    		session = null;
+    		sessionMode = false; // the shell has died once, the script files are used from now on
+    		return null;
+    	}
+    	if (session == null) {
+    		session = new ShellSession(launcher, getInterpreter(), tempPath, env, logger);
+    	}
+    	return session;
+    }
+    
+    /**
+     * Ends the shell session, the later executions use a new shell each
+     */
+    public synchronized void close() {
+    	sessionMode = false;
+    	if (session != null) {
+    		session.close();
+    		session = null;
+    	}
+    }
+    
+    private synchronized String getInterpreter() {
+    	if (interpreter == null) {
+    		Shell.DescriptorImpl desciptor = (DescriptorImpl) Jenkins.getInstance().getDescriptor(Shell.class);
+    		interpreter = desciptor.getShellOrDefault(tempPath.getChannel());
+    	}
+    	return interpreter;
+    }
+    
+    /**
+     * Executes the commands and passes every line of the output to the callback as it is produced
+     */
+    public int execute(List<String> cmds, LineCallback callback) throws Exception {
+    	LineCallbackOutputStream outputStream = new LineCallbackOutputStream(callback, charset);
+    	try {
+    		return execute(cmds, outputStream);
+    	} finally {
+    		outputStream.close();
+    	}
+    }
+    
+    /**
+     * Executes the commands and returns the output
+     * @param maxBytes size of the output retained, the earlier output is dropped once it is exceeded
+     * @return output of the commands, null if the commands have failed
+     */
+    public String capture(List<String> cmds, int maxBytes) throws Exception {
+    	RingBufferOutputStream outputStream = new RingBufferOutputStream(maxBytes);
+    	if (execute(cmds, outputStream) != 0) {
+    		return null;
+    	}
+    	return outputStream.toString(charset);
     }
     
 }
@@ -0,0 +1,233 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long lived shell on the node, to which the commands are streamed through stdin.
+ * <p>
+ * Every batch of commands is passed quoted to a child shell (interpreter -xec), same options as the script files
+ * executed by {@link ShellScript}, so the working directory and the options of a batch do not leak into the next
+ * one, and a syntax error in a batch (eg, an unbalanced quote or an unterminated heredoc) only fails the batch.
+ * The exit status of the batch is written to stdout after a marker which is unique to the session, the output
+ * read before the marker is passed to the caller.
+ * A session runs one batch at a time. Once the shell has exited the session is dead and the callers have to fall
+ * back to the script files.
+ * The stdout is read by a thread of the session and handed over through a queue, so that an interrupted
+ * execution (eg, an aborted build) kills the shell along with the running commands instead of waiting for them.
+ */
+public class ShellSession {
+	private static final int MAX_PENDING_BYTES = 64 * 1024;
+	private static final long EXIT_TIMEOUT_SECONDS = 10;
+	private static final int OUTPUT_CHUNKS = 256;
+	private static final byte[] END_OF_OUTPUT = new byte[0];
+	private final String marker = "__MAIDSAFE_EXIT_" + UUID.randomUUID().toString().replace("-", "") + "__";
+	private final byte[] markerBytes;
+	private final Proc proc;
+	private final String interpreter;
+	private final OutputStream stdin;
+	private final BlockingQueue<byte[]> output = new LinkedBlockingQueue<byte[]>(OUTPUT_CHUNKS);
+	private byte[] chunk;
+	private int position;
+	private boolean alive = true;
+
+	public ShellSession(Launcher launcher, String interpreter, FilePath pwd, EnvVars env, PrintStream stderr)
+			throws IOException, InterruptedException {
+		markerBytes = marker.getBytes("US-ASCII");
+		proc = launcher.launch().cmds(interpreter, "-s").envs(env).pwd(pwd).stderr(stderr)
+				.readStdout().writeStdin().quiet(true).start();
+		this.interpreter = interpreter;
+		stdin = proc.getStdin();
+		startReader(proc.getStdout());
+	}
+
+	/**
+	 * Copies the stdout of the shell to the output queue until the shell exits
+	 */
+	private void startReader(final InputStream stdout) {
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				int length;
+				byte[] buffer = new byte[8192];
+				try {
+					while ((length = stdout.read(buffer)) != -1) {
+						output.put(Arrays.copyOf(buffer, length));
+					}
+				} catch (Exception ex) {
+					// the shell is gone, the end of the output is reported below
+				} finally {
+					try {
+						output.put(END_OF_OUTPUT);
+					} catch (InterruptedException ignored) {
+						// nobody is waiting for the output
+					}
+				}
+			}
+		}, "Shell session output " + marker);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	public synchronized boolean isAlive() {
+		return alive;
+	}
+
+	/**
+	 * Runs the commands in a subshell of the session
+	 * @param outputStream receives the stdout of the commands
+	 * @return exit status of the commands, -1 if the shell has exited while running them
+	 * @throws IOException if the commands could not be sent, they have to be executed in another shell
+	 * @throws InterruptedException if the thread was interrupted, the shell is killed and the session is dead
+	 */
+	public synchronized int execute(List<String> cmds, OutputStream outputStream)
+			throws IOException, InterruptedException {
+		StringBuilder batch = new StringBuilder();
+		StringBuilder frame = new StringBuilder();
+		if (!alive) {
+			throw new IOException("Shell session has exited");
+		}
+		for (String cmd : cmds) {
+			batch.append(cmd).append("\n");
+		}
+		frame.append(quote(interpreter)).append(" -xec ").append(quote(batch.toString()))
+				.append(" </dev/null; printf '%s %d\\n' '").append(marker).append("' $?\n");
+		try {
+			stdin.write(frame.toString().getBytes("UTF-8"));
+			stdin.flush();
+		} catch (IOException ex) {
+			alive = false;
+			throw ex;
+		}
+		try {
+			return readUntilMarker(outputStream);
+		} catch (IOException ex) {
+			// the commands may have run partly, thus they are not sent again
+			alive = false;
+			return -1;
+		} catch (InterruptedException ex) {
+			alive = false;
+			kill();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Copies the stdout to the outputStream until the line holding the marker, and parses the exit status
+	 * following the marker. The marker can follow the last output of the commands on the same line.
+	 */
+	private int readUntilMarker(OutputStream outputStream) throws IOException, InterruptedException {
+		int b;
+		int index;
+		byte[] pending;
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while ((b = read()) != -1) {
+			if (b != '\n') {
+				line.write(b);
+				if (line.size() > MAX_PENDING_BYTES) {
+					// the marker can only be at the end of the pending bytes, the rest is output
+					pending = line.toByteArray();
+					outputStream.write(pending, 0, pending.length - markerBytes.length);
+					line.reset();
+					line.write(pending, pending.length - markerBytes.length, markerBytes.length);
+				}
+				continue;
+			}
+			pending = line.toByteArray();
+			line.reset();
+			index = indexOf(pending, markerBytes);
+			if (index < 0) {
+				outputStream.write(pending);
+				outputStream.write('\n');
+				continue;
+			}
+			outputStream.write(pending, 0, index);
+			outputStream.flush();
+			try {
+				return Integer.parseInt(new String(pending, index + markerBytes.length,
+						pending.length - index - markerBytes.length, "US-ASCII").trim());
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid exit status received from the shell session");
+			}
+		}
+		throw new IOException("Shell session has exited");
+	}
+
+	/**
+	 * Single quoted shell word, the batch can not end the quoting whatever it holds
+	 */
+	private static String quote(String value) {
+		return "'" + value.replace("'", "'\\''") + "'";
+	}
+
+	/**
+	 * Reads the next byte of the stdout, waiting for it without blocking the interruption
+	 * @return -1 once the shell has exited
+	 */
+	private int read() throws InterruptedException {
+		while (chunk == null || position == chunk.length) {
+			if (chunk == END_OF_OUTPUT) {
+				return -1;
+			}
+			chunk = output.take();
+			position = 0;
+		}
+		return chunk[position++] & 0xff;
+	}
+
+	private void kill() {
+		try {
+			proc.kill();
+		} catch (Exception ignored) {
+			// the shell is gone already
+		}
+	}
+
+	private static int indexOf(byte[] bytes, byte[] pattern) {
+		outer:
+		for (int i = 0; i <= bytes.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Ends the shell, it is killed if it does not exit in time
+	 */
+	public synchronized void close() {
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(EXIT_TIMEOUT_SECONDS);
+		alive = false;
+		try {
+			stdin.write("exit\n".getBytes("US-ASCII"));
+			stdin.close();
+			while (proc.isAlive() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(100);
+			}
+			if (proc.isAlive()) {
+				proc.kill();
+			}
+		} catch (Exception ex) {
+			kill();
+		}
+		output.clear(); // lets the reader thread end
+	}
+
+}
@@ -0,0 +1,147 @@
+package org.jenkinsci.plugins.MaidsafeJenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.util.StreamTaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.ModuleBuildResult;
+import org.jenkinsci.plugins.MaidsafeJenkins.actions.ModuleBuildResult.Status;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ModuleDependencyGraph;
+import org.jenkinsci.plugins.MaidsafeJenkins.util.ShellScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModuleBuildRunnerTest {
+	private File logDir;
+	private PrintStream logger;
+
+	/**
+	 * Records the executed commands instead of running them, the commands starting with "fail" exit with 1
+	 */
+	private static class RecordingScript extends ShellScript {
+		private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+		RecordingScript() {
+			super(null, new Launcher.LocalLauncher(StreamTaskListener.fromStdout()), new EnvVars());
+		}
+
+		@Override
+		public int execute(List<String> cmds, OutputStream outputStream, OutputStream errorStream) {
+			executed.addAll(cmds);
+			return cmds.get(0).startsWith("fail") ? 1 : 0;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		logDir = File.createTempFile("module-logs", "");
+		logDir.delete();
+		logger = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				// the progress of the modules is not checked
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		File[] logs = logDir.listFiles();
+		if (logs != null) {
+			for (File log : logs) {
+				log.delete();
+			}
+		}
+		logDir.delete();
+	}
+
+	private static Map<String, List<String>> commands(String... moduleCommands) {
+		Map<String, List<String>> commands = new LinkedHashMap<String, List<String>>();
+		for (int i = 0; i < moduleCommands.length; i += 2) {
+			commands.put(moduleCommands[i], Arrays.asList(moduleCommands[i + 1]));
+		}
+		return commands;
+	}
+
+	private static Map<String, ModuleBuildResult> byModule(List<ModuleBuildResult> results) {
+		Map<String, ModuleBuildResult> byModule = new LinkedHashMap<String, ModuleBuildResult>();
+		for (ModuleBuildResult result : results) {
+			byModule.put(result.getModule(), result);
+		}
+		return byModule;
+	}
+
+	@Test
+	public void buildsTheDependenciesFirst() throws Exception {
+		RecordingScript script = new RecordingScript();
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse("app: lib\nlib: core");
+		List<ModuleBuildResult> results = new ModuleBuildRunner(script, graph, 4, logDir, logger)
+				.run(commands("app", "build app", "lib", "build lib", "core", "build core"));
+		assertEquals(Arrays.asList("build core", "build lib", "build app"), script.executed);
+		assertEquals(3, results.size());
+		assertEquals("core", results.get(0).getModule());
+		assertEquals("lib", results.get(1).getModule());
+		assertEquals("app", results.get(2).getModule());
+		for (ModuleBuildResult result : results) {
+			assertEquals(Status.SUCCESS, result.getStatus());
+			assertTrue(ModuleBuildRunner.getLogFile(logDir, result.getModule()).isFile());
+		}
+	}
+
+	@Test
+	public void skipsTheDependentsOfAFailedModule() throws Exception {
+		RecordingScript script = new RecordingScript();
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse("app: lib\nlib: core");
+		Map<String, ModuleBuildResult> results = byModule(new ModuleBuildRunner(script, graph, 2, logDir, logger)
+				.run(commands("app", "build app", "lib", "build lib", "core", "fail core", "docs", "build docs")));
+		assertEquals(Status.FAILURE, results.get("core").getStatus());
+		assertEquals(1, results.get("core").getExitCode());
+		assertEquals(Status.SKIPPED, results.get("lib").getStatus());
+		assertEquals("dependency core has not been built", results.get("lib").getReason());
+		assertEquals(Status.SKIPPED, results.get("app").getStatus());
+		assertEquals("dependency lib has not been built", results.get("app").getReason());
+		assertEquals(Status.SUCCESS, results.get("docs").getStatus());
+		assertFalse(script.executed.contains("build lib"));
+		assertFalse(script.executed.contains("build app"));
+	}
+
+	@Test
+	public void skipsTheModulesOfACycle() throws Exception {
+		RecordingScript script = new RecordingScript();
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse("a: b\nb: a\nc: d");
+		Map<String, ModuleBuildResult> results = byModule(new ModuleBuildRunner(script, graph, 2, logDir, logger)
+				.run(commands("a", "build a", "b", "build b", "c", "build c")));
+		assertEquals(Status.SKIPPED, results.get("a").getStatus());
+		assertEquals("cyclic dependency", results.get("a").getReason());
+		assertEquals(Status.SKIPPED, results.get("b").getStatus());
+		assertEquals("cyclic dependency", results.get("b").getReason());
+		// d is not built in this run, c does not wait for it
+		assertEquals(Status.SUCCESS, results.get("c").getStatus());
+		assertNull(results.get("c").getReason());
+		assertEquals(Arrays.asList("build c"), script.executed);
+	}
+
+	@Test
+	public void runsNothingWithoutModules() throws Exception {
+		ModuleBuildRunner runner = new ModuleBuildRunner(new RecordingScript(), new ModuleDependencyGraph(), 2,
+				logDir, logger);
+		assertEquals(0, runner.run(new LinkedHashMap<String, List<String>>()).size());
+	}
+
+}
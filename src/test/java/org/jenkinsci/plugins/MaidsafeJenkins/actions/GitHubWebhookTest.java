@@ -0,0 +1,48 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.actions;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+/**
+ * Signatures from the example of the Github documentation on validating the webhook deliveries
+ */
+public class GitHubWebhookTest {
+	private static final String SECRET = "It's a Secret to Everybody";
+	private static final String SHA256 = "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17";
+	private static final String SHA1 = "sha1=01dc10d0c83e72ed246219cdd91669667fe2ca59";
+
+	private static byte[] payload(String text) throws UnsupportedEncodingException {
+		return text.getBytes("UTF-8");
+	}
+
+	@Test
+	public void acceptsTheSignaturesOfThePayload() throws UnsupportedEncodingException {
+		assertTrue(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), SHA256, null));
+		assertTrue(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), null, SHA1));
+		assertTrue(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), SHA256.toUpperCase()
+				.replace("SHA256=", "sha256="), null));
+	}
+
+	@Test
+	public void rejectsAnotherPayloadOrSecret() throws UnsupportedEncodingException {
+		assertFalse(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World?"), SHA256, null));
+		assertFalse(GitHubWebhook.isSignatureValid("another secret", payload("Hello, World!"), SHA256, null));
+		assertFalse(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), SHA1.replace("sha1=", ""), null));
+	}
+
+	@Test
+	public void prefersTheSha256Signature() throws UnsupportedEncodingException {
+		assertFalse(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), "sha256=00", SHA1));
+		assertTrue(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), SHA256, "sha1=00"));
+	}
+
+	@Test
+	public void rejectsAnUnsignedPayload() throws UnsupportedEncodingException {
+		assertFalse(GitHubWebhook.isSignatureValid(SECRET, payload("Hello, World!"), null, null));
+	}
+
+}
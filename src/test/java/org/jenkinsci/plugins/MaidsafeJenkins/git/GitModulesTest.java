@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitModulesTest {
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("gitmodules", ".txt");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private Map<String, String> parse(String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return GitModules.parse(file);
+	}
+
+	@Test
+	public void mapsTheModuleNamesToThePaths() throws IOException {
+		Map<String, String> modules = parse("[submodule \"src/common\"]\n"
+				+ "\tpath = src/common\n"
+				+ "\turl = git@github.com:maidsafe/MaidSafe-Common.git\n"
+				+ "[submodule \"vault\"]\n"
+				+ "\turl = https://github.com/maidsafe/vault/\n"
+				+ "\tpath = \"src/my vault\"\n");
+		assertEquals(2, modules.size());
+		assertEquals("src/common", modules.get("maidsafe-common"));
+		assertEquals("src/my vault", modules.get("vault"));
+	}
+
+	@Test
+	public void defaultsThePathToTheSubmoduleName() throws IOException {
+		Map<String, String> modules = parse("[submodule \"drive\"]\n  url = git@github.com:maidsafe/Drive\n");
+		assertEquals("drive", modules.get("drive"));
+	}
+
+	@Test
+	public void skipsTheCommentsAndTheOtherSections() throws IOException {
+		Map<String, String> modules = parse("# comment\n"
+				+ "[core]\n"
+				+ "\tpath = ignored\n"
+				+ "\turl = git@github.com:maidsafe/ignored.git\n"
+				+ "[submodule \"drive\"]\n"
+				+ "\tpath = src/drive ; comment\n"
+				+ "\turl = git@github.com:maidsafe/drive.git # comment\n"
+				+ "[submodule \"nourl\"]\n"
+				+ "\tpath = src/nourl\n");
+		assertEquals(1, modules.size());
+		assertEquals("src/drive", modules.get("drive"));
+		assertFalse(modules.containsKey("ignored"));
+	}
+
+	@Test
+	public void namesTheModulesAfterTheLastSegmentOfTheUrl() {
+		assertEquals("routing", GitModules.getModuleName("git@github.com:maidsafe/Routing.git"));
+		assertEquals("routing", GitModules.getModuleName("https://github.com/maidsafe/routing//"));
+		assertEquals("routing", GitModules.getModuleName("git@github.com:Routing"));
+	}
+
+}
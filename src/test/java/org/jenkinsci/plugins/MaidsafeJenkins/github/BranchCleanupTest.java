@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BranchCleanupTest {
+
+	@Test
+	public void deletesTheBranchesOfAModuleWithASingleCommand() {
+		Map<String, String> branchUsedByModule = new LinkedHashMap<String, String>();
+		Map<String, String> modulePaths = new LinkedHashMap<String, String>();
+		branchUsedByModule.put("Common", "pr-12-Common");
+		branchUsedByModule.put("common", "pr-13-common");
+		branchUsedByModule.put("Rudp", "pr-14-Rudp");
+		modulePaths.put("Common", "src/common");
+		modulePaths.put("common", "src/common");
+		modulePaths.put("Rudp", "src/rudp");
+		assertEquals(Arrays.asList(
+				"( cd src/common && git checkout next && git branch -D pr-12-Common pr-13-common )"
+						+ " || echo 'Temporary branches could not be deleted in src/common'",
+				"( cd src/rudp && git checkout next && git branch -D pr-14-Rudp )"
+						+ " || echo 'Temporary branches could not be deleted in src/rudp'"),
+				BranchCleanup.getCommands("next", branchUsedByModule, modulePaths));
+	}
+
+	@Test
+	public void detachesTheHeadWithoutBaseBranch() {
+		Map<String, String> branchUsedByModule = Collections.singletonMap("MaidSafe", "pr-1-MaidSafe");
+		assertEquals(Arrays.asList("( cd . && git checkout --detach && git branch -D pr-1-MaidSafe )"
+				+ " || echo 'Temporary branches could not be deleted in .'"),
+				BranchCleanup.getCommands(null, branchUsedByModule, Collections.singletonMap("MaidSafe", ".")));
+	}
+
+	@Test
+	public void usesTheModuleNameWithoutPath() {
+		Map<String, String> branchUsedByModule = Collections.singletonMap("Vault", "pr-5-Vault");
+		assertEquals(Arrays.asList("( cd Vault && git checkout next && git branch -D pr-5-Vault )"
+				+ " || echo 'Temporary branches could not be deleted in Vault'"),
+				BranchCleanup.getCommands("next", branchUsedByModule, null));
+	}
+
+	@Test
+	public void returnsNoCommandWithoutBranches() {
+		assertEquals(0, BranchCleanup.getCommands("next", new LinkedHashMap<String, String>(),
+				new LinkedHashMap<String, String>()).size());
+	}
+
+}
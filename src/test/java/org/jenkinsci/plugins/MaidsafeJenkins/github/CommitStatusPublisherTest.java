@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpStatus;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatus.State;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatusPublisher.Delivery;
+import org.jenkinsci.plugins.MaidsafeJenkins.github.CommitStatusPublisher.PostResult;
+import org.junit.Test;
+
+public class CommitStatusPublisherTest {
+	private static final long TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Records the posted states, the first post is held until it is released and fails with the given status
+	 */
+	private static class SlowFirstPostPublisher extends CommitStatusPublisher {
+		private final List<State> posted = Collections.synchronizedList(new ArrayList<State>());
+		private final CountDownLatch firstStarted = new CountDownLatch(1);
+		private final CountDownLatch releaseFirst = new CountDownLatch(1);
+		private final int firstStatusCode;
+
+		SlowFirstPostPublisher(int firstStatusCode) {
+			this.firstStatusCode = firstStatusCode;
+		}
+
+		@Override
+		PostResult post(Delivery delivery) throws IOException {
+			boolean first;
+			synchronized (posted) {
+				first = posted.isEmpty();
+				posted.add(delivery.getState());
+			}
+			if (!first) {
+				return new PostResult(HttpStatus.SC_CREATED, 0, null, false);
+			}
+			firstStarted.countDown();
+			try {
+				releaseFirst.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				throw new IOException(ex.getMessage());
+			}
+			return new PostResult(firstStatusCode, 0, null, firstStatusCode >= 500);
+		}
+	}
+
+	/**
+	 * Records the outcome of the deliveries
+	 */
+	private static class Results implements CommitStatusPublisher.Callback {
+		private final List<String> outcomes = Collections.synchronizedList(new ArrayList<String>());
+		private final CountDownLatch done;
+
+		Results(int expected) {
+			done = new CountDownLatch(expected);
+		}
+
+		public void onDelivered(Delivery delivery, int statusCode) {
+			outcomes.add("delivered " + delivery.getState());
+			done.countDown();
+		}
+
+		public void onFailed(Delivery delivery, int statusCode, String reason) {
+			outcomes.add("failed " + delivery.getState());
+			done.countDown();
+		}
+
+		public void onSuperseded(Delivery delivery) {
+			outcomes.add("superseded " + delivery.getState());
+			done.countDown();
+		}
+
+		void await() throws InterruptedException {
+			assertTrue("deliveries did not complete :: " + outcomes, done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		}
+	}
+
+	private static Delivery delivery(State state, Results results) {
+		return new Delivery("repo", "sha", "context", state, "https://api.github.com/repos/org/repo/statuses/sha",
+				"{}", null, results);
+	}
+
+	@Test
+	public void postsTheNewerStatusOnceTheSlowPostHasFinished() throws Exception {
+		SlowFirstPostPublisher publisher = new SlowFirstPostPublisher(HttpStatus.SC_CREATED);
+		Results results = new Results(2);
+		publisher.publish(delivery(State.PENDING, results));
+		assertTrue(publisher.firstStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		publisher.publish(delivery(State.SUCCESS, results));
+		Thread.sleep(200);
+		assertEquals(Arrays.asList(State.PENDING), publisher.posted);
+		publisher.releaseFirst.countDown();
+		results.await();
+		assertEquals(Arrays.asList(State.PENDING, State.SUCCESS), publisher.posted);
+		assertEquals(Arrays.asList("delivered PENDING", "delivered SUCCESS"), results.outcomes);
+	}
+
+	@Test
+	public void dropsTheRetryOfAStatusOlderThanTheLatest() throws Exception {
+		SlowFirstPostPublisher publisher = new SlowFirstPostPublisher(HttpStatus.SC_BAD_GATEWAY);
+		Results results = new Results(2);
+		publisher.publish(delivery(State.PENDING, results));
+		assertTrue(publisher.firstStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		publisher.publish(delivery(State.SUCCESS, results));
+		publisher.releaseFirst.countDown();
+		results.await();
+		assertEquals(Arrays.asList(State.PENDING, State.SUCCESS), publisher.posted);
+		assertTrue(results.outcomes.contains("superseded PENDING"));
+		assertTrue(results.outcomes.contains("delivered SUCCESS"));
+	}
+
+	@Test
+	public void coalescesTheStatusesWaitingForThePost() throws Exception {
+		SlowFirstPostPublisher publisher = new SlowFirstPostPublisher(HttpStatus.SC_CREATED);
+		Results results = new Results(4);
+		publisher.publish(delivery(State.PENDING, results));
+		assertTrue(publisher.firstStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		publisher.publish(delivery(State.PENDING, results));
+		publisher.publish(delivery(State.FAILURE, results));
+		publisher.publish(delivery(State.SUCCESS, results));
+		publisher.releaseFirst.countDown();
+		results.await();
+		assertEquals(Arrays.asList(State.PENDING, State.SUCCESS), publisher.posted);
+		assertEquals(Arrays.asList("superseded PENDING", "superseded FAILURE", "delivered PENDING",
+				"delivered SUCCESS"), results.outcomes);
+	}
+
+}
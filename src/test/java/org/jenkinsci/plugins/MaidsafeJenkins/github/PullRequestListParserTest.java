@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PullRequestListParserTest {
+	private static final String LISTING = "["
+			+ "{\"url\": \"https://api.github.com/repos/maidsafe/Common/pulls/12\","
+			+ " \"html_url\": \"https://github.com/maidsafe/Common/pull/12\","
+			+ " \"number\": 12, \"state\": \"open\", \"title\": \"MAID-101 fix the logging\","
+			+ " \"user\": {\"login\": \"dev\", \"html_url\": \"https://github.com/dev\"},"
+			+ " \"labels\": [{\"url\": \"https://api.github.com/labels/1\", \"name\": \"ready\"}, {\"name\": \"ci\"}],"
+			+ " \"requested_reviewers\": [{\"login\": \"reviewer\"}],"
+			+ " \"head\": {\"label\": \"dev:MAID-101\", \"ref\": \"MAID-101\","
+			+ " \"sha\": \"6dcb09b5b57875f334f61aebed695e2e4193db5e\","
+			+ " \"user\": {\"login\": \"dev\", \"ref\": \"not-the-head\"},"
+			+ " \"repo\": {\"name\": \"Common\", \"ssh_url\": \"git@github.com:dev/Common.git\","
+			+ " \"owner\": {\"login\": \"dev\", \"ssh_url\": \"not-the-repo\"}}},"
+			+ " \"base\": {\"ref\": \"next\", \"sha\": \"0000000000000000000000000000000000000000\","
+			+ " \"repo\": {\"html_url\": \"https://github.com/maidsafe/Common\"}},"
+			+ " \"_links\": {\"html\": {\"href\": \"https://github.com/maidsafe/Common/pull/12\"}},"
+			+ " \"merged_at\": null, \"draft\": false},"
+			+ "{\"html_url\": \"https://github.com/maidsafe/Common/pull/13\", \"title\": \"MAID-102\","
+			+ " \"labels\": [],"
+			+ " \"head\": {\"ref\": \"MAID-102\", \"sha\": \"1dcb09b5b57875f334f61aebed695e2e4193db5e\","
+			+ " \"repo\": null},"
+			+ " \"base\": {\"ref\": \"master\"}}"
+			+ "]";
+
+	@Test
+	public void projectsTheFieldsOfEachPullRequest() throws Exception {
+		List<PullRequest> pullRequests = PullRequestListParser.parse(new StringReader(LISTING));
+		PullRequest first = pullRequests.get(0);
+		assertEquals(2, pullRequests.size());
+		assertEquals("MAID-101", first.getHeadRef());
+		assertEquals("6dcb09b5b57875f334f61aebed695e2e4193db5e", first.getHeadSha());
+		assertEquals("git@github.com:dev/Common.git", first.getHeadSshUrl());
+		assertEquals("next", first.getBaseRef());
+		assertEquals("https://github.com/maidsafe/Common/pull/12", first.getHtmlUrl());
+		assertEquals("MAID-101 fix the logging", first.getTitle());
+		assertEquals(Arrays.asList("ready", "ci"), first.getLabels());
+	}
+
+	@Test
+	public void resetsTheFieldsBetweenPullRequests() throws Exception {
+		PullRequest second = PullRequestListParser.parse(new StringReader(LISTING)).get(1);
+		assertEquals("MAID-102", second.getHeadRef());
+		assertEquals("1dcb09b5b57875f334f61aebed695e2e4193db5e", second.getHeadSha());
+		// the repository of a deleted fork is null
+		assertNull(second.getHeadSshUrl());
+		assertEquals("master", second.getBaseRef());
+		assertEquals("https://github.com/maidsafe/Common/pull/13", second.getHtmlUrl());
+		assertEquals(Collections.<String>emptyList(), second.getLabels());
+	}
+
+	@Test
+	public void parsesAnEmptyListing() throws Exception {
+		assertEquals(0, PullRequestListParser.parse(new StringReader("[]")).size());
+	}
+
+}
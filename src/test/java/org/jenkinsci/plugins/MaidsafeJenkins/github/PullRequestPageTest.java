@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class PullRequestPageTest {
+
+	@Test
+	public void parsesTheNextPage() {
+		assertEquals("https://api.github.com/repositories/1/pulls?state=open&page=2",
+				PullRequestPage.parseNextPage("<https://api.github.com/repositories/1/pulls?state=open&page=2>;"
+						+ " rel=\"next\", <https://api.github.com/repositories/1/pulls?state=open&page=5>;"
+						+ " rel=\"last\""));
+	}
+
+	@Test
+	public void parsesTheNextPageInAnyPosition() {
+		assertEquals("https://api.github.com/repositories/1/pulls?page=3",
+				PullRequestPage.parseNextPage("<https://api.github.com/repositories/1/pulls?page=1>; rel=\"first\", "
+						+ "<https://api.github.com/repositories/1/pulls?page=1>; rel=\"prev\", "
+						+ "<https://api.github.com/repositories/1/pulls?page=3> ; REL = \"next\""));
+	}
+
+	@Test
+	public void returnsNullOnTheLastPage() {
+		assertNull(PullRequestPage.parseNextPage("<https://api.github.com/repositories/1/pulls?page=1>; rel=\"first\", "
+				+ "<https://api.github.com/repositories/1/pulls?page=4>; rel=\"prev\""));
+		assertNull(PullRequestPage.parseNextPage(null));
+		assertNull(PullRequestPage.parseNextPage(""));
+	}
+
+	@Test
+	public void skipsTheMalformedLinks() {
+		assertNull(PullRequestPage.parseNextPage("https://api.github.com/repositories/1/pulls?page=2; rel=\"next\""));
+		assertEquals("https://api.github.com/repositories/1/pulls?page=2",
+				PullRequestPage.parseNextPage("<broken; rel=\"next\", "
+						+ "<https://api.github.com/repositories/1/pulls?page=2>; rel=\"next\""));
+	}
+
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class PullRequestTrieTest {
+
+	private static PullRequest pullRequest(String headRef, int number) {
+		return new PullRequest(headRef, null, null, "next", "https://github.com/maidsafe/repo/pull/" + number);
+	}
+
+	@Test
+	public void findsThePullRequestsByPrefixIgnoringTheCaseAndDashes() {
+		PullRequestTrie trie = new PullRequestTrie();
+		trie.put("maidsafe/drive", pullRequest("MAID-123_fix", 1));
+		trie.put("maidsafe/vault", pullRequest("maid_123-other", 2));
+		trie.put("maidsafe/vault", pullRequest("maid-456", 3));
+		Map<String, List<PullRequest>> matches = trie.find("maid-123", true);
+		assertEquals(2, matches.size());
+		assertEquals("MAID-123_fix", matches.get("maidsafe/drive").get(0).getHeadRef());
+		assertEquals("maid_123-other", matches.get("maidsafe/vault").get(0).getHeadRef());
+	}
+
+	@Test
+	public void filtersTheCaseSensitiveMatches() {
+		PullRequestTrie trie = new PullRequestTrie();
+		trie.put("maidsafe/drive", pullRequest("MAID-123", 1));
+		trie.put("maidsafe/vault", pullRequest("maid-123", 2));
+		Map<String, List<PullRequest>> matches = trie.find("maid_123", false);
+		assertEquals(1, matches.size());
+		assertEquals("maid-123", matches.get("maidsafe/vault").get(0).getHeadRef());
+		assertTrue(trie.find("MAID", false).containsKey("maidsafe/drive"));
+		assertFalse(trie.find("MAID", false).containsKey("maidsafe/vault"));
+	}
+
+	@Test
+	public void countsThePullRequestsPutAndRemoved() {
+		PullRequestTrie trie = new PullRequestTrie();
+		PullRequest first = pullRequest("maid-1", 1);
+		PullRequest second = pullRequest("maid-12", 2);
+		trie.put("maidsafe/drive", first);
+		trie.put("maidsafe/vault", second);
+		assertEquals(2, trie.size());
+		trie.remove("maidsafe/vault", second);
+		trie.remove("maidsafe/vault", second); // removed already
+		trie.remove("maidsafe/vault", first); // not put for this repository
+		assertEquals(1, trie.size());
+		assertEquals(1, trie.find("maid-1", true).size());
+	}
+
+	@Test
+	public void prunesTheEmptiedBranches() {
+		PullRequestTrie trie = new PullRequestTrie();
+		PullRequest first = pullRequest("maid-1", 1);
+		PullRequest second = pullRequest("maid-12", 2);
+		trie.put("maidsafe/drive", first);
+		trie.put("maidsafe/drive", second);
+		trie.remove("maidsafe/drive", second);
+		assertTrue(trie.find("maid-12", true).isEmpty());
+		assertEquals(1, trie.find("maid-1", true).get("maidsafe/drive").size());
+		trie.remove("maidsafe/drive", first);
+		assertEquals(0, trie.size());
+		assertTrue(trie.find("m", true).isEmpty());
+	}
+
+	@Test
+	public void comparesThePrefixAsNormalised() {
+		assertTrue(PullRequestTrie.startsWith("MAID-1_x", "maid_1-", true));
+		assertFalse(PullRequestTrie.startsWith("MAID-1_x", "maid_1-", false));
+		assertFalse(PullRequestTrie.startsWith("maid", "maid-1", true));
+		assertFalse(PullRequestTrie.startsWith(null, "maid", true));
+	}
+
+}
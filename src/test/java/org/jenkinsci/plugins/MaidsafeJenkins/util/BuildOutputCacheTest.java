@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class BuildOutputCacheTest {
+	private static final String HEAD = "8f2c1e4b9a7d6c5b4a3f2e1d0c9b8a7f6e5d4c3b";
+	private static final List<String> COMMANDS = Arrays.asList("cmake .", "make");
+
+	private static SortedMap<String, String> heads(String... moduleHeads) {
+		SortedMap<String, String> heads = new TreeMap<String, String>();
+		for (int i = 0; i < moduleHeads.length; i += 2) {
+			heads.put(moduleHeads[i], moduleHeads[i + 1]);
+		}
+		return heads;
+	}
+
+	@Test
+	public void keyIsAStableSha1() {
+		String key = BuildOutputCache.key("src/common", HEAD, heads("boost", "a1"), COMMANDS);
+		assertTrue(key, key.matches("[0-9a-f]{40}"));
+		assertEquals(key, BuildOutputCache.key("src/common", HEAD, heads("boost", "a1"), Arrays.asList("cmake .",
+				"make")));
+	}
+
+	@Test
+	public void keyChangesWithTheBuiltContent() {
+		String key = BuildOutputCache.key("src/common", HEAD, heads("boost", "a1"), COMMANDS);
+		assertFalse(key.equals(BuildOutputCache.key("src/rudp", HEAD, heads("boost", "a1"), COMMANDS)));
+		assertFalse(key.equals(BuildOutputCache.key("src/common", "0" + HEAD.substring(1), heads("boost", "a1"),
+				COMMANDS)));
+		assertFalse(key.equals(BuildOutputCache.key("src/common", HEAD, heads("boost", "a2"), COMMANDS)));
+		assertFalse(key.equals(BuildOutputCache.key("src/common", HEAD, heads(), COMMANDS)));
+		assertFalse(key.equals(BuildOutputCache.key("src/common", HEAD, heads("boost", "a1"),
+				Arrays.asList("cmake .", "make all"))));
+	}
+
+	@Test
+	public void keySeparatesTheFields() {
+		// the same bytes split differently between the fields are different builds
+		assertFalse(BuildOutputCache.key("src/a", HEAD, heads(), Arrays.asList("make", "test")).equals(
+				BuildOutputCache.key("src/a", HEAD, heads(), Arrays.asList("maketest"))));
+		assertFalse(BuildOutputCache.key("src/a", HEAD, heads(), COMMANDS).equals(
+				BuildOutputCache.key("src/a" + HEAD, "", heads(), COMMANDS)));
+		assertFalse(BuildOutputCache.key("src/a", HEAD, heads("b", "1", "c", "2"), COMMANDS).equals(
+				BuildOutputCache.key("src/a", HEAD, heads("b", "2", "c", "1"), COMMANDS)));
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jenkinsci.plugins.MaidsafeJenkins.util.LineCallbackOutputStream.LineCallback;
+import org.junit.Test;
+
+public class LineCallbackOutputStreamTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private final List<String> lines = new ArrayList<String>();
+	private final LineCallback callback = new LineCallback() {
+		public void onLine(String line) {
+			lines.add(line);
+		}
+	};
+
+	@Test
+	public void passesTheLinesWithoutTheirTerminators() throws IOException {
+		LineCallbackOutputStream out = new LineCallbackOutputStream(callback, UTF8);
+		out.write("first\r\nsec".getBytes(UTF8));
+		out.write("ond\n\nthi".getBytes(UTF8));
+		out.write('r');
+		out.write('d');
+		out.write('\n');
+		assertEquals(Arrays.asList("first", "second", "", "third"), lines);
+	}
+
+	@Test
+	public void passesTheUnterminatedLineOnClose() throws IOException {
+		LineCallbackOutputStream out = new LineCallbackOutputStream(callback, UTF8);
+		out.write("line\nlast".getBytes(UTF8));
+		assertEquals(Arrays.asList("line"), lines);
+		out.close();
+		assertEquals(Arrays.asList("line", "last"), lines);
+	}
+
+	@Test
+	public void splitsTheLinesLongerThanTheMaximum() throws IOException {
+		LineCallbackOutputStream out = new LineCallbackOutputStream(callback, UTF8, 4);
+		out.write("abcdefghij\nklmn".getBytes(UTF8));
+		out.write('o');
+		out.close();
+		assertEquals(Arrays.asList("abcd", "efgh", "ij", "klmn", "o"), lines);
+	}
+
+	@Test
+	public void decodesTheCharset() throws IOException {
+		LineCallbackOutputStream out = new LineCallbackOutputStream(callback, UTF8);
+		out.write("caf\u00e9\n".getBytes(UTF8));
+		assertEquals(Arrays.asList("caf\u00e9"), lines);
+	}
+
+}
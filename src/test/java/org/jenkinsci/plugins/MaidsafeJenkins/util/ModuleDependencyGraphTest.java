@@ -0,0 +1,57 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ModuleDependencyGraphTest {
+	private static final String DECLARATION = "# dependencies\n"
+			+ "Drive: common, private\r\n"
+			+ "\n"
+			+ "vault: routing   passport\n"
+			+ "routing: common\n"
+			+ "private: common\n"
+			+ "invalid line\n";
+
+	@Test
+	public void parsesTheDirectDependencies() {
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse(DECLARATION);
+		assertEquals(Arrays.asList("common", "private"), Arrays.asList(graph.getDependencies("DRIVE").toArray()));
+		assertEquals(Arrays.asList("routing", "passport"), Arrays.asList(graph.getDependencies("vault").toArray()));
+		assertTrue(graph.getDependencies("common").isEmpty());
+	}
+
+	@Test
+	public void ignoresAnEmptyDeclaration() {
+		assertTrue(ModuleDependencyGraph.parse(null).isEmpty());
+		assertTrue(ModuleDependencyGraph.parse("# none\n\n").isEmpty());
+	}
+
+	@Test
+	public void collectsTheTransitiveDependenciesSorted() {
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse(DECLARATION);
+		assertEquals(Arrays.asList("common", "passport", "routing"),
+				Arrays.asList(graph.getTransitiveDependencies("Vault").toArray()));
+		assertTrue(graph.getTransitiveDependencies("common").isEmpty());
+	}
+
+	@Test
+	public void ignoresTheCycles() {
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse("a: b\nb: c\nc: a\n");
+		assertEquals(Arrays.asList("b", "c"), Arrays.asList(graph.getTransitiveDependencies("a").toArray()));
+		assertEquals(Arrays.asList("a", "c", "b"), graph.getAffectedModules(Collections.singletonList("A")));
+	}
+
+	@Test
+	public void addsTheDependentsOfTheChangedModules() {
+		ModuleDependencyGraph graph = ModuleDependencyGraph.parse(DECLARATION);
+		assertEquals(Arrays.asList("routing", "vault"), graph.getAffectedModules(Arrays.asList("Routing")));
+		assertEquals(Arrays.asList("passport", "common", "vault", "drive", "routing", "private"),
+				graph.getAffectedModules(Arrays.asList("passport", "common")));
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.MaidsafeJenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class RingBufferOutputStreamTest {
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	@Test
+	public void retainsEverythingBelowTheCapacity() throws IOException {
+		RingBufferOutputStream out = new RingBufferOutputStream(8);
+		out.write("abc".getBytes(ASCII));
+		out.write('d');
+		assertEquals("abcd", out.toString(ASCII));
+		assertFalse(out.isTruncated());
+		assertEquals(4, out.getTotalBytes());
+	}
+
+	@Test
+	public void wrapsAroundKeepingTheLastBytes() throws IOException {
+		RingBufferOutputStream out = new RingBufferOutputStream(5);
+		out.write("abc".getBytes(ASCII));
+		out.write("defg".getBytes(ASCII));
+		assertEquals("cdefg", out.toString(ASCII));
+		out.write('h');
+		out.write("ij".getBytes(ASCII), 0, 2);
+		assertEquals("fghij", out.toString(ASCII));
+		assertTrue(out.isTruncated());
+		assertEquals(10, out.getTotalBytes());
+	}
+
+	@Test
+	public void keepsTheTailOfAChunkLargerThanTheCapacity() throws IOException {
+		RingBufferOutputStream out = new RingBufferOutputStream(4);
+		out.write("ab".getBytes(ASCII));
+		out.write("0123456789".getBytes(ASCII), 1, 8);
+		assertEquals("5678", out.toString(ASCII));
+		out.write("xy".getBytes(ASCII));
+		assertEquals("78xy", out.toString(ASCII));
+	}
+
+	@Test
+	public void notesTheDroppedBytes() throws IOException {
+		RingBufferOutputStream out = new RingBufferOutputStream(3);
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		out.write("abcdef".getBytes(ASCII));
+		out.writeTo(copy);
+		assertEquals("... 3 bytes of output omitted ...\ndef", new String(copy.toByteArray(), ASCII));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAnEmptyCapacity() {
+		new RingBufferOutputStream(0);
+	}
+
+}